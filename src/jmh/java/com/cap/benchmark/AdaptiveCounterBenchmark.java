@@ -0,0 +1,87 @@
+package com.cap.benchmark;
+
+import com.cap.counter.AdaptiveCounter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link AdaptiveCounter} against {@link AtomicLong} and {@link LongAdder}.
+ * {@code increment} runs on all benchmark threads, run it with {@code -t 1} to see the cost of an uncontended counter
+ * and with {@link ThreadScalingMain} to see the contended one. {@code incrementAndRead} has 3 writers and 1 reader
+ * per group, all threads share one counter. {@code adaptiveCounterExact} reads with {@link AdaptiveCounter#exactSum()},
+ * the others with a plain read or sum.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AdaptiveCounterBenchmark {
+
+    @Param({"atomicLong", "longAdder", "adaptiveCounter", "adaptiveCounterExact"})
+    private String counterType;
+
+    private Counter counter;
+
+    @Setup(Level.Trial)
+    public void createCounter() {
+        counter = switch (counterType) {
+            case "atomicLong" -> {
+                final var atomicLong = new AtomicLong();
+                yield new Counter(atomicLong::incrementAndGet, atomicLong::get);
+            }
+            case "longAdder" -> {
+                final var longAdder = new LongAdder();
+                yield new Counter(longAdder::increment, longAdder::sum);
+            }
+            case "adaptiveCounter" -> {
+                final var adaptiveCounter = new AdaptiveCounter();
+                yield new Counter(adaptiveCounter::increment, adaptiveCounter::sum);
+            }
+            case "adaptiveCounterExact" -> {
+                final var adaptiveCounter = new AdaptiveCounter();
+                yield new Counter(adaptiveCounter::increment, adaptiveCounter::exactSum);
+            }
+            default -> throw new IllegalArgumentException("Unknown counter " + counterType);
+        };
+    }
+
+    @Benchmark
+    public void increment() {
+        counter.increment().run();
+    }
+
+    @Benchmark
+    @Group("incrementAndRead")
+    @GroupThreads(3)
+    public void write() {
+        counter.increment().run();
+    }
+
+    @Benchmark
+    @Group("incrementAndRead")
+    @GroupThreads(1)
+    public long read() {
+        return counter.read().getAsLong();
+    }
+
+    private record Counter(Runnable increment, LongSupplier read) {
+    }
+}
@@ -0,0 +1,75 @@
+package com.cap.benchmark;
+
+import com.cap.collector.AttemptBudget;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-attempt coordination cost of ConcurrentSuccessfulTaskCollector with an empty task,
+ * comparing the previous semaphore + flag + check-then-increment pattern with {@link AttemptBudget}.
+ * Run with {@code -t} to change the number of contending threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(32)
+@State(Scope.Benchmark)
+public class AttemptCoordinationBenchmark {
+    private static final int MAX_ATTEMPTS = Integer.MAX_VALUE;
+
+    private AttemptBudget budget;
+
+    private Semaphore semaphore;
+    private AtomicInteger attemptCount;
+    private AtomicInteger failedCount;
+    private AtomicBoolean shouldStop;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        budget = new AttemptBudget(MAX_ATTEMPTS, MAX_ATTEMPTS);
+        semaphore = new Semaphore(32);
+        attemptCount = new AtomicInteger();
+        failedCount = new AtomicInteger();
+        shouldStop = new AtomicBoolean();
+    }
+
+    @Benchmark
+    public boolean attemptBudget() {
+        if (budget.tryReserveAttempt()) {
+            budget.recordFailure();
+            return true;
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean semaphoreWithCheckThenIncrement() throws InterruptedException {
+        if (attemptCount.get() < MAX_ATTEMPTS && !shouldStop.get()) {
+            semaphore.acquire();
+            try {
+                attemptCount.incrementAndGet();
+                failedCount.incrementAndGet();
+            } finally {
+                semaphore.release();
+            }
+            return true;
+        }
+        return false;
+    }
+}
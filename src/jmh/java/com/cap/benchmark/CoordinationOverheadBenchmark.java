@@ -0,0 +1,131 @@
+package com.cap.benchmark;
+
+import ch.qos.logback.classic.Level;
+import com.cap.ConcurrentSuccessfulTaskCollector;
+import com.cap.collector.CollectionOptions;
+import com.cap.completion.FirstSuccessfulTaskCompletionService;
+import com.cap.completion.FirstSuccessfulTaskCompletionService.DescribedTask;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Framework cost per task of {@link FirstSuccessfulTaskCompletionService} and {@link ConcurrentSuccessfulTaskCollector}.
+ * Every operation is one task, methods differ in the number of tasks per race or run.
+ * <p>
+ * With no-op tasks the score is pure coordination cost. With a fixed task latency L and concurrency C the ideal score is
+ * L / C, anything above it is overhead. Run with {@code -prof gc} to get allocated bytes per task
+ * ({@code gc.alloc.rate.norm}), e.g. {@code -Djmh.include=CoordinationOverhead -Djmh.options="-prof gc"}.
+ * <p>
+ * Logging is limited to warnings, otherwise writing debug and info lines of every failed task to the console would
+ * be measured instead of the engines.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CoordinationOverheadBenchmark {
+
+    @Param({"1", "4", "16"})
+    private int concurrency;
+
+    @Param({"0", "50"})
+    private int taskLatencyMicros;
+
+    private FirstSuccessfulTaskCompletionService<Integer> completionService;
+    private List<DescribedTask<Integer>> tasks10;
+    private List<DescribedTask<Integer>> tasks100;
+    private ConcurrentSuccessfulTaskCollector<Integer> collector;
+    private ConcurrentSuccessfulTaskCollector<Integer> reusingCollector;
+    private CollectionOptions<Integer> options100;
+    private CollectionOptions<Integer> options10000;
+
+    @Setup
+    public void setup() {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        // every task fails, so a race waits for all of them
+        completionService = new FirstSuccessfulTaskCompletionService.Builder<Integer>()
+                .withExecutorProvider(() -> Executors.newFixedThreadPool(concurrency))
+                .withTaskResultJudge(describedTaskResult -> false)
+                .build();
+        tasks10 = tasks(10);
+        tasks100 = tasks(100);
+        collector = new ConcurrentSuccessfulTaskCollector<>(concurrency, Duration.ofSeconds(10), false);
+        reusingCollector = new ConcurrentSuccessfulTaskCollector<>(concurrency, Duration.ofSeconds(10), true);
+        // built once, so the measured cost is the run and not the option validation
+        options100 = new CollectionOptions.Builder<Integer>().withMaxAttempts(100).build();
+        options10000 = new CollectionOptions.Builder<Integer>().withMaxAttempts(10_000).build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        reusingCollector.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(10)
+    public Object race10Tasks() {
+        return completionService.waitForResults(tasks10);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public Object race100Tasks() {
+        return completionService.waitForResults(tasks100);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public Object collect100Attempts() {
+        return countSuccessfulResults(collector, options100);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(10_000)
+    public Object collect10000Attempts() {
+        return countSuccessfulResults(collector, options10000);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public Object collect100AttemptsReusingWorkerPool() {
+        return countSuccessfulResults(reusingCollector, options100);
+    }
+
+    private List<DescribedTask<Integer>> tasks(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new DescribedTask<>("task" + i, () -> task(i)))
+                .toList();
+    }
+
+    private Integer task(int i) {
+        if (taskLatencyMicros > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(taskLatencyMicros));
+        }
+        return i;
+    }
+
+    private ConcurrentSuccessfulTaskCollector.TasksCount countSuccessfulResults(ConcurrentSuccessfulTaskCollector<Integer> tested, CollectionOptions<Integer> options) {
+        return tested.countSuccessfulResults(() -> task(0), options);
+    }
+}
@@ -0,0 +1,106 @@
+package com.cap.benchmark;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of incrementing one shared counter with different synchronization primitives, all threads writing.
+ * Run through {@link ThreadScalingMain} to cover 1 to N threads, e.g.
+ * {@code mvn -Pjmh verify -DskipTests -Djmh.main=com.cap.benchmark.ThreadScalingMain -Djmh.include=CounterIncrement -Djmh.options="-t 8"}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CounterIncrementBenchmark {
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(CounterIncrementBenchmark.class, "value", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object monitor = new Object();
+    private final ReentrantLock unfairLock = new ReentrantLock();
+    private final ReentrantLock fairLock = new ReentrantLock(true);
+    private final StampedLock stampedLock = new StampedLock();
+    private final AtomicInteger atomicInteger = new AtomicInteger();
+    private final LongAdder longAdder = new LongAdder();
+    private int plainValue;
+    private volatile int value;
+
+    @Benchmark
+    public int synchronizedBlock() {
+        synchronized (monitor) {
+            return ++plainValue;
+        }
+    }
+
+    @Benchmark
+    public int reentrantLockUnfair() {
+        unfairLock.lock();
+        try {
+            return ++plainValue;
+        } finally {
+            unfairLock.unlock();
+        }
+    }
+
+    @Benchmark
+    public int reentrantLockFair() {
+        fairLock.lock();
+        try {
+            return ++plainValue;
+        } finally {
+            fairLock.unlock();
+        }
+    }
+
+    @Benchmark
+    public int stampedLockWrite() {
+        final var stamp = stampedLock.writeLock();
+        try {
+            return ++plainValue;
+        } finally {
+            stampedLock.unlockWrite(stamp);
+        }
+    }
+
+    @Benchmark
+    public int atomicInteger() {
+        return atomicInteger.incrementAndGet();
+    }
+
+    @Benchmark
+    public void longAdder() {
+        longAdder.increment();
+    }
+
+    @Benchmark
+    public int varHandleCas() {
+        int current;
+        do {
+            current = (int) VALUE.getVolatile(this);
+        } while (!VALUE.compareAndSet(this, current, current + 1));
+        return current + 1;
+    }
+}
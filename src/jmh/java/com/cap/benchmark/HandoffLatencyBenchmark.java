@@ -0,0 +1,217 @@
+package com.cap.benchmark;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Exchanger;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One-to-one handoff latency: the benchmark thread sends a token to an echo thread and waits until it comes back,
+ * so one operation is a round trip of two handoffs. The echo thread is a platform or a virtual thread.
+ * Sample time mode reports percentiles of the round trip besides the mean.
+ * <p>
+ * Every channel is used in strict alternation, which is what the simplest mechanisms (a single slot guarded by
+ * wait/notify, park/unpark or a future completed once per message) rely on. {@link Exchanger} swaps both tokens
+ * in a single rendezvous. See {@link HandoffThroughputBenchmark} for many producers and consumers.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class HandoffLatencyBenchmark {
+    private static final Object TOKEN = new Object();
+
+    @Param({"waitNotify", "parkUnpark", "synchronousQueue", "arrayBlockingQueue", "linkedTransferQueue", "exchanger", "completableFuture"})
+    private String mechanism;
+
+    @Param({"platform", "virtual"})
+    private String echoThread;
+
+    private Channel ping;
+    private Channel pong;
+    private Exchanger<Object> exchanger;
+    private Thread echo;
+
+    @Setup(Level.Trial)
+    public void startEcho() {
+        final Runnable echoLoop;
+        if (mechanism.equals("exchanger")) {
+            exchanger = new Exchanger<>();
+            echoLoop = () -> {
+                try {
+                    while (true) {
+                        exchanger.exchange(TOKEN);
+                    }
+                } catch (InterruptedException e) {
+                    // benchmark finished
+                }
+            };
+        } else {
+            ping = Channel.create(mechanism);
+            pong = Channel.create(mechanism);
+            echoLoop = () -> {
+                try {
+                    while (true) {
+                        pong.send(ping.receive());
+                    }
+                } catch (InterruptedException e) {
+                    // benchmark finished
+                }
+            };
+        }
+        echo = (echoThread.equals("virtual") ? Thread.ofVirtual() : Thread.ofPlatform().daemon()).name("echo").start(echoLoop);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopEcho() throws InterruptedException {
+        echo.interrupt();
+        echo.join();
+    }
+
+    @Benchmark
+    public Object roundTrip() throws InterruptedException {
+        if (exchanger != null) {
+            return exchanger.exchange(TOKEN);
+        }
+        ping.send(TOKEN);
+        return pong.receive();
+    }
+
+    /**
+     * Single-producer, single-consumer channel.
+     */
+    interface Channel {
+        void send(Object message) throws InterruptedException;
+
+        Object receive() throws InterruptedException;
+
+        static Channel create(String mechanism) {
+            return switch (mechanism) {
+                case "waitNotify" -> new WaitNotifyChannel();
+                case "parkUnpark" -> new ParkUnparkChannel();
+                case "synchronousQueue" -> new QueueChannel(new SynchronousQueue<>());
+                case "arrayBlockingQueue" -> new QueueChannel(new ArrayBlockingQueue<>(1024));
+                case "linkedTransferQueue" -> new TransferChannel(new LinkedTransferQueue<>());
+                case "completableFuture" -> new FutureChannel();
+                default -> throw new IllegalArgumentException("Unknown mechanism " + mechanism);
+            };
+        }
+    }
+
+    static final class WaitNotifyChannel implements Channel {
+        private Object slot;
+
+        @Override
+        public synchronized void send(Object message) {
+            slot = message;
+            notify();
+        }
+
+        @Override
+        public synchronized Object receive() throws InterruptedException {
+            while (slot == null) {
+                wait();
+            }
+            final var message = slot;
+            slot = null;
+            return message;
+        }
+    }
+
+    static final class ParkUnparkChannel implements Channel {
+        private volatile Object slot;
+        private volatile Thread receiver;
+
+        @Override
+        public void send(Object message) {
+            slot = message;
+            final var waiting = receiver;
+            if (waiting != null) {
+                LockSupport.unpark(waiting);
+            }
+        }
+
+        @Override
+        public Object receive() throws InterruptedException {
+            receiver = Thread.currentThread();
+            Object message;
+            while ((message = slot) == null) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            slot = null;
+            return message;
+        }
+    }
+
+    record QueueChannel(BlockingQueue<Object> queue) implements Channel {
+        @Override
+        public void send(Object message) throws InterruptedException {
+            queue.put(message);
+        }
+
+        @Override
+        public Object receive() throws InterruptedException {
+            return queue.take();
+        }
+    }
+
+    record TransferChannel(LinkedTransferQueue<Object> queue) implements Channel {
+        @Override
+        public void send(Object message) throws InterruptedException {
+            queue.transfer(message);
+        }
+
+        @Override
+        public Object receive() throws InterruptedException {
+            return queue.take();
+        }
+    }
+
+    /**
+     * Completes one future per message, the receiver prepares the next future before the reply that triggers the next message.
+     */
+    static final class FutureChannel implements Channel {
+        private volatile CompletableFuture<Object> next = new CompletableFuture<>();
+
+        @Override
+        public void send(Object message) {
+            next.complete(message);
+        }
+
+        @Override
+        public Object receive() throws InterruptedException {
+            try {
+                final var message = next.get();
+                next = new CompletableFuture<>();
+                return message;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
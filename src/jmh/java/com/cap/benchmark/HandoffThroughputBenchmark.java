@@ -0,0 +1,151 @@
+package com.cap.benchmark;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Many-to-many handoff throughput: benchmark threads (producers, {@code -t}) hand messages over one shared channel
+ * to {@link #consumers} platform or virtual consumer threads. Every operation blocks until a consumer takes the message
+ * or there is room in a bounded buffer, so the score is the rate at which consumers receive messages.
+ * <p>
+ * Park/unpark, {@link java.util.concurrent.Exchanger} and {@link java.util.concurrent.CompletableFuture} hand a message
+ * to one known party only and are measured one-to-one in {@link HandoffLatencyBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class HandoffThroughputBenchmark {
+    private static final int CAPACITY = 1024;
+
+    @Param({"waitNotify", "synchronousQueue", "arrayBlockingQueue", "linkedTransferQueue"})
+    private String mechanism;
+
+    @Param({"platform", "virtual"})
+    private String consumerThreads;
+
+    @Param({"4"})
+    private int consumers;
+
+    private Channel channel;
+    private final List<Thread> consumerList = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void startConsumers() {
+        channel = switch (mechanism) {
+            case "waitNotify" -> new WaitNotifyChannel();
+            case "synchronousQueue" -> new QueueChannel(new SynchronousQueue<>());
+            case "arrayBlockingQueue" -> new QueueChannel(new ArrayBlockingQueue<>(CAPACITY));
+            case "linkedTransferQueue" -> new TransferChannel(new LinkedTransferQueue<>());
+            default -> throw new IllegalArgumentException("Unknown mechanism " + mechanism);
+        };
+        final var builder = consumerThreads.equals("virtual") ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+        for (int i = 0; i < consumers; i++) {
+            consumerList.add(builder.name("consumer-" + i).start(() -> {
+                try {
+                    while (true) {
+                        channel.receive();
+                    }
+                } catch (InterruptedException e) {
+                    // benchmark finished
+                }
+            }));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopConsumers() throws InterruptedException {
+        for (Thread consumer : consumerList) {
+            consumer.interrupt();
+            consumer.join();
+        }
+        consumerList.clear();
+    }
+
+    @Benchmark
+    public void handoff() throws InterruptedException {
+        channel.send(Boolean.TRUE);
+    }
+
+    private interface Channel {
+        void send(Object message) throws InterruptedException;
+
+        Object receive() throws InterruptedException;
+    }
+
+    /**
+     * Bounded buffer guarded by one monitor, like {@code WaitNotifyTest.SimpleBlockingQueue} with a capacity.
+     */
+    private static final class WaitNotifyChannel implements Channel {
+        private final ArrayDeque<Object> buffer = new ArrayDeque<>(CAPACITY);
+
+        @Override
+        public synchronized void send(Object message) throws InterruptedException {
+            while (buffer.size() == CAPACITY) {
+                wait();
+            }
+            buffer.add(message);
+            notifyAll();
+        }
+
+        @Override
+        public synchronized Object receive() throws InterruptedException {
+            while (buffer.isEmpty()) {
+                wait();
+            }
+            final var message = buffer.poll();
+            notifyAll();
+            return message;
+        }
+    }
+
+    private record QueueChannel(BlockingQueue<Object> queue) implements Channel {
+        @Override
+        public void send(Object message) throws InterruptedException {
+            queue.put(message);
+        }
+
+        @Override
+        public Object receive() throws InterruptedException {
+            return queue.take();
+        }
+    }
+
+    /**
+     * {@link LinkedTransferQueue#transfer} waits for a consumer, without it producers would only fill an unbounded queue.
+     */
+    private record TransferChannel(LinkedTransferQueue<Object> queue) implements Channel {
+        @Override
+        public void send(Object message) throws InterruptedException {
+            queue.transfer(message);
+        }
+
+        @Override
+        public Object receive() throws InterruptedException {
+            return queue.take();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.cap.benchmark;
+
+import com.cap.queue.MpmcBlockingQueue;
+import com.cap.queue.WaitStrategy;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link MpmcBlockingQueue} with each {@link WaitStrategy} against {@link ArrayBlockingQueue}, 2 producers and 2 consumers
+ * per group sharing one queue.
+ * <p>
+ * {@code offerPoll} uses the non-blocking operations and shows the cost of the queue itself, a failed offer or poll
+ * counts as an operation too. {@code putTake} waits with a 1 ms timeout instead of {@code put}/{@code take}, because
+ * a thread blocked forever after the other side of the group finished its iteration would hang the benchmark.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class MpmcQueueBenchmark {
+    private static final int PRODUCERS = 2;
+    private static final int CONSUMERS = 2;
+    private static final Integer ELEMENT = 42;
+
+    @Param({"arrayBlockingQueue", "mpmcBusySpin", "mpmcYielding", "mpmcParking"})
+    private String queueType;
+
+    @Param({"1024"})
+    private int capacity;
+
+    private BlockingQueue<Integer> queue;
+
+    @Setup(Level.Trial)
+    public void createQueue() {
+        queue = switch (queueType) {
+            case "arrayBlockingQueue" -> new ArrayBlockingQueue<>(capacity);
+            case "mpmcBusySpin" -> new MpmcBlockingQueue<>(capacity, WaitStrategy.busySpin());
+            case "mpmcYielding" -> new MpmcBlockingQueue<>(capacity, WaitStrategy.yielding());
+            case "mpmcParking" -> new MpmcBlockingQueue<>(capacity, WaitStrategy.parking(Duration.ofMillis(1)));
+            default -> throw new IllegalArgumentException("Unknown queue " + queueType);
+        };
+    }
+
+    @Benchmark
+    @Group("offerPoll")
+    @GroupThreads(PRODUCERS)
+    public boolean offer() {
+        return queue.offer(ELEMENT);
+    }
+
+    @Benchmark
+    @Group("offerPoll")
+    @GroupThreads(CONSUMERS)
+    public Integer poll() {
+        return queue.poll();
+    }
+
+    @Benchmark
+    @Group("putTake")
+    @GroupThreads(PRODUCERS)
+    public boolean put() throws InterruptedException {
+        return queue.offer(ELEMENT, 1, TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    @Group("putTake")
+    @GroupThreads(CONSUMERS)
+    public Integer take() throws InterruptedException {
+        return queue.poll(1, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,151 @@
+package com.cap.benchmark;
+
+import com.cap.map.ConcurrentLongLongMap;
+import com.cap.map.IntIntMap;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Primitive open-addressing maps against boxed {@link HashMap} and {@link ConcurrentHashMap} as counting tables.
+ * <ul>
+ *     <li>{@code fill} inserts {@value #ENTRIES} entries into a presized map, so nothing is discarded by resizing and
+ *     with {@code -prof gc} the {@code gc.alloc.rate.norm} metric is the memory taken per entry</li>
+ *     <li>{@code addTo} increments random counters of a single-threaded map</li>
+ *     <li>{@code concurrentAddTo} increments random counters of a map shared by 4 threads</li>
+ * </ul>
+ * {@code mvn -Pjmh verify -DskipTests -Djmh.include=PrimitiveMapBenchmark -Djmh.options="-prof gc"}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveMapBenchmark {
+    private static final int ENTRIES = 100_000;
+
+    @State(Scope.Benchmark)
+    public static class Footprint {
+        @Param({"hashMap", "intIntMap", "concurrentHashMap", "concurrentLongLongMap"})
+        private String mapType;
+
+        private final int[] keys = new int[ENTRIES];
+
+        @Setup(Level.Trial)
+        public void scrambleKeys() {
+            for (int i = 0; i < ENTRIES; i++) {
+                // distinct and spread over the whole int range, outside of the Integer cache
+                keys[i] = i * 0x9E3779B1 | 1;
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Counters {
+        @Param({"hashMap", "intIntMap"})
+        private String counterMap;
+
+        @Param({"1000", "1000000"})
+        private int counterKeys;
+
+        private HashMap<Integer, Integer> boxed;
+        private IntIntMap primitive;
+
+        @Setup(Level.Trial)
+        public void createMap() {
+            boxed = counterMap.equals("hashMap") ? new HashMap<>() : null;
+            primitive = counterMap.equals("intIntMap") ? new IntIntMap() : null;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedCounters {
+        @Param({"concurrentHashMap", "concurrentLongLongMap"})
+        private String sharedMap;
+
+        @Param({"1000", "1000000"})
+        private int sharedKeys;
+
+        private ConcurrentHashMap<Long, Long> boxed;
+        private ConcurrentLongLongMap primitive;
+
+        @Setup(Level.Trial)
+        public void createMap() {
+            boxed = sharedMap.equals("concurrentHashMap") ? new ConcurrentHashMap<>() : null;
+            primitive = sharedMap.equals("concurrentLongLongMap") ? new ConcurrentLongLongMap() : null;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(ENTRIES)
+    public Object fill(Footprint state) {
+        final var keys = state.keys;
+        switch (state.mapType) {
+            case "hashMap" -> {
+                final var map = HashMap.<Integer, Integer>newHashMap(ENTRIES);
+                for (int key : keys) {
+                    map.put(key, key);
+                }
+                return map;
+            }
+            case "intIntMap" -> {
+                final var map = new IntIntMap(ENTRIES);
+                for (int key : keys) {
+                    map.put(key, key);
+                }
+                return map;
+            }
+            case "concurrentHashMap" -> {
+                final var map = new ConcurrentHashMap<Long, Long>(ENTRIES);
+                for (int key : keys) {
+                    map.put((long) key, (long) key);
+                }
+                return map;
+            }
+            case "concurrentLongLongMap" -> {
+                final var map = new ConcurrentLongLongMap(ENTRIES, 4 * Runtime.getRuntime().availableProcessors());
+                for (int key : keys) {
+                    map.put(key, key);
+                }
+                return map;
+            }
+            default -> throw new IllegalArgumentException("Unknown map " + state.mapType);
+        }
+    }
+
+    @Benchmark
+    public int addTo(Counters state) {
+        final var key = ThreadLocalRandom.current().nextInt(state.counterKeys);
+        if (state.primitive != null) {
+            return state.primitive.addTo(key, 1);
+        }
+        return state.boxed.merge(key, 1, Integer::sum);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long concurrentAddTo(SharedCounters state) {
+        final long key = ThreadLocalRandom.current().nextInt(state.sharedKeys);
+        if (state.primitive != null) {
+            return state.primitive.addTo(key, 1);
+        }
+        return state.boxed.merge(key, 1L, Long::sum);
+    }
+}
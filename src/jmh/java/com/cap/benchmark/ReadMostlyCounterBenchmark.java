@@ -0,0 +1,196 @@
+package com.cap.benchmark;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Read-mostly access to one shared counter: in every group 3 threads read while 1 thread increments.
+ * Results are reported separately for the readers and the writer of each primitive.
+ * With {@code -t} (or {@link ThreadScalingMain}) the number of groups grows, keeping the 3:1 ratio. The state is
+ * shared by all groups, so every added group contends for the same lock and counter instead of getting its own copy.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReadMostlyCounterBenchmark {
+    private static final int READERS = 3;
+    private static final int WRITERS = 1;
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(ReadMostlyCounterBenchmark.class, "value", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object monitor = new Object();
+    private final ReentrantLock unfairLock = new ReentrantLock();
+    private final ReentrantLock fairLock = new ReentrantLock(true);
+    private final StampedLock stampedLock = new StampedLock();
+    private final AtomicInteger atomicInteger = new AtomicInteger();
+    private final LongAdder longAdder = new LongAdder();
+    private int plainValue;
+    private volatile int value;
+
+    @Benchmark
+    @Group("synchronizedBlock")
+    @GroupThreads(READERS)
+    public int synchronizedRead() {
+        synchronized (monitor) {
+            return plainValue;
+        }
+    }
+
+    @Benchmark
+    @Group("synchronizedBlock")
+    @GroupThreads(WRITERS)
+    public int synchronizedWrite() {
+        synchronized (monitor) {
+            return ++plainValue;
+        }
+    }
+
+    @Benchmark
+    @Group("reentrantLockUnfair")
+    @GroupThreads(READERS)
+    public int unfairLockRead() {
+        unfairLock.lock();
+        try {
+            return plainValue;
+        } finally {
+            unfairLock.unlock();
+        }
+    }
+
+    @Benchmark
+    @Group("reentrantLockUnfair")
+    @GroupThreads(WRITERS)
+    public int unfairLockWrite() {
+        unfairLock.lock();
+        try {
+            return ++plainValue;
+        } finally {
+            unfairLock.unlock();
+        }
+    }
+
+    @Benchmark
+    @Group("reentrantLockFair")
+    @GroupThreads(READERS)
+    public int fairLockRead() {
+        fairLock.lock();
+        try {
+            return plainValue;
+        } finally {
+            fairLock.unlock();
+        }
+    }
+
+    @Benchmark
+    @Group("reentrantLockFair")
+    @GroupThreads(WRITERS)
+    public int fairLockWrite() {
+        fairLock.lock();
+        try {
+            return ++plainValue;
+        } finally {
+            fairLock.unlock();
+        }
+    }
+
+    @Benchmark
+    @Group("stampedLockOptimistic")
+    @GroupThreads(READERS)
+    public int stampedLockOptimisticRead() {
+        var stamp = stampedLock.tryOptimisticRead();
+        var current = plainValue;
+        if (!stampedLock.validate(stamp)) {
+            stamp = stampedLock.readLock();
+            try {
+                current = plainValue;
+            } finally {
+                stampedLock.unlockRead(stamp);
+            }
+        }
+        return current;
+    }
+
+    @Benchmark
+    @Group("stampedLockOptimistic")
+    @GroupThreads(WRITERS)
+    public int stampedLockWrite() {
+        final var stamp = stampedLock.writeLock();
+        try {
+            return ++plainValue;
+        } finally {
+            stampedLock.unlockWrite(stamp);
+        }
+    }
+
+    @Benchmark
+    @Group("atomicInteger")
+    @GroupThreads(READERS)
+    public int atomicIntegerRead() {
+        return atomicInteger.get();
+    }
+
+    @Benchmark
+    @Group("atomicInteger")
+    @GroupThreads(WRITERS)
+    public int atomicIntegerWrite() {
+        return atomicInteger.incrementAndGet();
+    }
+
+    @Benchmark
+    @Group("longAdder")
+    @GroupThreads(READERS)
+    public long longAdderRead() {
+        return longAdder.sum();
+    }
+
+    @Benchmark
+    @Group("longAdder")
+    @GroupThreads(WRITERS)
+    public void longAdderWrite() {
+        longAdder.increment();
+    }
+
+    @Benchmark
+    @Group("varHandleCas")
+    @GroupThreads(READERS)
+    public int varHandleRead() {
+        return (int) VALUE.getVolatile(this);
+    }
+
+    @Benchmark
+    @Group("varHandleCas")
+    @GroupThreads(WRITERS)
+    public int varHandleWrite() {
+        int current;
+        do {
+            current = (int) VALUE.getVolatile(this);
+        } while (!VALUE.compareAndSet(this, current, current + 1));
+        return current + 1;
+    }
+}
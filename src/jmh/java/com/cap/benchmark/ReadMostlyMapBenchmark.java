@@ -0,0 +1,116 @@
+package com.cap.benchmark;
+
+import com.cap.map.ReadMostlyMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Shared lookup table under a mix of reads and writes: every operation reads a random key with probability
+ * {@link #readPercent} and writes one otherwise. Compares the {@link ReentrantReadWriteLock} around a {@link HashMap}
+ * from {@code LocksTests} with {@link ConcurrentHashMap} and the copy-on-write {@link ReadMostlyMap}.
+ * Run with {@link ThreadScalingMain} to see how reads scale with threads. {@link ReadMostlyMap} copies all {@link #keys}
+ * entries per combined write, so it pays off only with many reader cores and rare writes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ReadMostlyMapBenchmark {
+
+    @Param({"readWriteLock", "concurrentHashMap", "readMostlyMap"})
+    private String mapType;
+
+    @Param({"99", "90"})
+    private int readPercent;
+
+    @Param({"1024"})
+    private int keys;
+
+    private LookupTable table;
+
+    @Setup(Level.Trial)
+    public void fillTable() {
+        table = switch (mapType) {
+            case "readWriteLock" -> new ReadWriteLockTable();
+            case "concurrentHashMap" -> new MapTable(new ConcurrentHashMap<>());
+            case "readMostlyMap" -> new MapTable(new ReadMostlyMap<>());
+            default -> throw new IllegalArgumentException("Unknown map " + mapType);
+        };
+        for (int key = 0; key < keys; key++) {
+            table.put(key, key);
+        }
+    }
+
+    @Benchmark
+    public Integer readOrWrite() {
+        final var random = ThreadLocalRandom.current();
+        final var key = random.nextInt(keys);
+        if (random.nextInt(100) < readPercent) {
+            return table.get(key);
+        }
+        return table.put(key, key);
+    }
+
+    private interface LookupTable {
+        Integer get(Integer key);
+
+        Integer put(Integer key, Integer value);
+    }
+
+    private record MapTable(Map<Integer, Integer> map) implements LookupTable {
+        @Override
+        public Integer get(Integer key) {
+            return map.get(key);
+        }
+
+        @Override
+        public Integer put(Integer key, Integer value) {
+            return map.put(key, value);
+        }
+    }
+
+    private static final class ReadWriteLockTable implements LookupTable {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<Integer, Integer> map = new HashMap<>();
+
+        @Override
+        public Integer get(Integer key) {
+            lock.readLock().lock();
+            try {
+                return map.get(key);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public Integer put(Integer key, Integer value) {
+            lock.writeLock().lock();
+            try {
+                return map.put(key, value);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
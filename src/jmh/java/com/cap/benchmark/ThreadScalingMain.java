@@ -0,0 +1,45 @@
+package com.cap.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs selected benchmarks once per thread count, 1, 2, 4, ... up to the count given with {@code -t}
+ * (twice the number of processors by default). Accepts the same arguments as {@code org.openjdk.jmh.Main},
+ * a result file given with {@code -rff} is written once per thread count with a {@code -t<threads>} suffix.
+ */
+public class ThreadScalingMain {
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        final var commandLineOptions = new CommandLineOptions(args);
+        final var maxThreads = commandLineOptions.getThreads().orElse(2 * Runtime.getRuntime().availableProcessors());
+        for (int threads : threadCounts(maxThreads)) {
+            final var options = new OptionsBuilder()
+                    .parent(commandLineOptions)
+                    .threads(threads);
+            if (commandLineOptions.getResult().hasValue()) {
+                options.result(withSuffix(commandLineOptions.getResult().get(), "-t" + threads));
+            }
+            new Runner(options.build()).run();
+        }
+    }
+
+    private static List<Integer> threadCounts(int maxThreads) {
+        final var counts = new ArrayList<Integer>();
+        for (int threads = 1; threads < maxThreads; threads *= 2) {
+            counts.add(threads);
+        }
+        counts.add(maxThreads);
+        return counts;
+    }
+
+    private static String withSuffix(String file, String suffix) {
+        final var extension = file.lastIndexOf('.');
+        return extension < 0 ? file + suffix : file.substring(0, extension) + suffix + file.substring(extension);
+    }
+}
@@ -1,8 +1,26 @@
 package com.cap;
 
+import com.cap.load.LoadRunner;
+import com.cap.load.LoadRunnerOptions;
+
+/**
+ * Command-line HTTP load runner, see {@link LoadRunnerOptions#USAGE}.
+ * <p>
+ * {@code java com.cap.Application --stand-in --stand-in-latency=20ms --stand-in-error-rate=0.1 --concurrency=50 --duration=10s}
+ */
 public class Application {
 
-	public static void main(String[] args) {
+	public static void main(String[] args) throws Exception {
+		final LoadRunnerOptions options;
+		try {
+			options = LoadRunnerOptions.parse(args);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(LoadRunnerOptions.USAGE);
+			System.exit(2);
+			return;
+		}
+		new LoadRunner(options, System.out).run();
 	}
 
 }
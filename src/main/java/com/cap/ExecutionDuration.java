@@ -5,6 +5,10 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.Future;
 
+/**
+ * Single-shot wall-clock timing including thread start, good enough for demonstrations.
+ * Use {@link com.cap.measurement.Measurement} to compare durations.
+ */
 public class ExecutionDuration {
 
     public static Duration measureExecutionDuration(Runnable runAndMeasure) {
@@ -0,0 +1,252 @@
+package com.cap.counter;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Counter for hot paths that starts as one CAS cell, like {@link java.util.concurrent.atomic.AtomicLong}, and splits
+ * into padded stripes once a failed CAS shows that threads contend for it, like {@link java.util.concurrent.atomic.LongAdder}.
+ * <p>
+ * A thread updates the stripe chosen by its id. When the CAS on that stripe fails, the stripes double up to the number
+ * of processors, after that the update is added unconditionally to the next stripe. Every cell is padded to its own
+ * cache lines, so threads updating different stripes do not invalidate each other's lines. An uncontended counter
+ * costs one CAS per update and one cell of memory.
+ * <p>
+ * {@link #sum()} is a fast approximate read: it adds the cells up without coordination, updates racing with it
+ * may be partially included. {@link #exactSum()} returns a value the counter had at one instant during the call.
+ * Each cell keeps added and subtracted amounts as two never decreasing totals, so two equal collects of all cells
+ * prove that nothing changed in between. When writers keep changing the cells, the read briefly holds new updates
+ * back until two collects match.
+ */
+public final class AdaptiveCounter {
+    private static final VarHandle CELLS;
+    private static final int MAX_STRIPES = Math.max(2, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() - 1) << 1);
+    private static final int OPTIMISTIC_COLLECTS = 8;
+
+    static {
+        try {
+            CELLS = MethodHandles.lookup().findVarHandle(AdaptiveCounter.class, "cells", Cell[].class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Cell base = new Cell();
+    private final Object freezeLock = new Object();
+    private volatile Cell[] cells;
+    private volatile boolean frozen;
+
+    public void increment() {
+        add(1);
+    }
+
+    public void decrement() {
+        add(-1);
+    }
+
+    /**
+     * @param delta amount to add, any value but {@link Long#MIN_VALUE}, which has no negation to subtract
+     * @throws IllegalArgumentException when {@code delta} is {@link Long#MIN_VALUE}
+     */
+    public void add(long delta) {
+        if (delta == Long.MIN_VALUE) {
+            throw new IllegalArgumentException("delta must be greater than Long.MIN_VALUE");
+        }
+        while (frozen) {
+            Thread.onSpinWait();
+        }
+        var stripes = cells;
+        if (stripes == null) {
+            if (base.tryAdd(delta)) {
+                return;
+            }
+            stripes = grow(null);
+        }
+        final var index = stripeIndex();
+        while (true) {
+            if (stripes[index & (stripes.length - 1)].tryAdd(delta)) {
+                return;
+            }
+            if (stripes.length >= MAX_STRIPES) {
+                stripes[(index + 1) & (stripes.length - 1)].add(delta);
+                return;
+            }
+            stripes = grow(stripes);
+        }
+    }
+
+    /**
+     * @return sum of all updates, updates concurrent with the call may be included partially
+     */
+    public long sum() {
+        var sum = base.value();
+        final var stripes = cells;
+        if (stripes != null) {
+            for (Cell cell : stripes) {
+                sum += cell.value();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return value of the counter at one instant during the call
+     */
+    public long exactSum() {
+        var previous = collect();
+        for (int attempt = 0; attempt < OPTIMISTIC_COLLECTS; attempt++) {
+            final var current = collect();
+            if (current.equals(previous)) {
+                return current.sum();
+            }
+            previous = current;
+        }
+        synchronized (freezeLock) {
+            // updates that passed the frozen check before it was set finish in a few steps
+            frozen = true;
+            try {
+                while (true) {
+                    final var current = collect();
+                    if (current.equals(previous)) {
+                        return current.sum();
+                    }
+                    previous = current;
+                    Thread.onSpinWait();
+                }
+            } finally {
+                frozen = false;
+            }
+        }
+    }
+
+    /**
+     * @return number of stripes, 0 while the counter uses a single cell
+     */
+    public int stripes() {
+        final var stripes = cells;
+        return stripes == null ? 0 : stripes.length;
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(sum());
+    }
+
+    /**
+     * @return the stripes after growing, possibly by another thread
+     */
+    private Cell[] grow(Cell[] current) {
+        final var length = current == null ? 2 : current.length * 2;
+        final var grown = current == null ? new Cell[length] : Arrays.copyOf(current, length);
+        for (int i = current == null ? 0 : current.length; i < length; i++) {
+            grown[i] = new Cell();
+        }
+        final var witness = (Cell[]) CELLS.compareAndExchange(this, current, grown);
+        return witness == current ? grown : witness;
+    }
+
+    private static int stripeIndex() {
+        return (int) ((Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L) >>> 32);
+    }
+
+    private Collect collect() {
+        final var stripes = cells;
+        final var totals = new long[2 + (stripes == null ? 0 : 2 * stripes.length)];
+        totals[0] = base.added();
+        totals[1] = base.subtracted();
+        if (stripes != null) {
+            for (int i = 0; i < stripes.length; i++) {
+                totals[2 + 2 * i] = stripes[i].added();
+                totals[3 + 2 * i] = stripes[i].subtracted();
+            }
+        }
+        return new Collect(stripes, totals);
+    }
+
+    /**
+     * Totals of all cells read one after another, {@code stripes} distinguishes collects before and after growing.
+     */
+    private record Collect(Cell[] stripes, long[] totals) {
+        long sum() {
+            var sum = 0L;
+            for (int i = 0; i < totals.length; i += 2) {
+                sum += totals[i] - totals[i + 1];
+            }
+            return sum;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Collect that && stripes == that.stripes && Arrays.equals(totals, that.totals);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(totals);
+        }
+    }
+
+    /**
+     * 128 bytes on each side of the totals: a 64-byte cache line and the adjacent line fetched with it.
+     */
+    private static class CellLeftPadding {
+        long p00, p01, p02, p03, p04, p05, p06, p07;
+        long p10, p11, p12, p13, p14, p15, p16, p17;
+    }
+
+    private static class CellTotals extends CellLeftPadding {
+        private static final VarHandle ADDED;
+        private static final VarHandle SUBTRACTED;
+
+        static {
+            try {
+                final var lookup = MethodHandles.lookup();
+                ADDED = lookup.findVarHandle(CellTotals.class, "added", long.class);
+                SUBTRACTED = lookup.findVarHandle(CellTotals.class, "subtracted", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private volatile long added;
+        private volatile long subtracted;
+
+        final boolean tryAdd(long delta) {
+            if (delta >= 0) {
+                final var current = added;
+                return ADDED.compareAndSet(this, current, current + delta);
+            }
+            final var current = subtracted;
+            return SUBTRACTED.compareAndSet(this, current, current - delta);
+        }
+
+        final void add(long delta) {
+            if (delta >= 0) {
+                ADDED.getAndAdd(this, delta);
+            } else {
+                SUBTRACTED.getAndAdd(this, -delta);
+            }
+        }
+
+        final long added() {
+            return added;
+        }
+
+        final long subtracted() {
+            return subtracted;
+        }
+
+        final long value() {
+            return added - subtracted;
+        }
+    }
+
+    private static class CellRightPadding extends CellTotals {
+        long p20, p21, p22, p23, p24, p25, p26, p27;
+        long p30, p31, p32, p33, p34, p35, p36, p37;
+    }
+
+    private static final class Cell extends CellRightPadding {
+    }
+}
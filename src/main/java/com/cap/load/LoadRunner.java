@@ -0,0 +1,114 @@
+package com.cap.load;
+
+import com.cap.ConcurrentSuccessfulTaskCollector;
+import com.cap.ConcurrentSuccessfulTaskCollector.TasksReport;
+import com.cap.collector.CollectionOptions;
+import com.cap.collector.LatencySnapshot;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends GET requests with {@link HttpClient} through a {@link ConcurrentSuccessfulTaskCollector}, a response with 2xx status
+ * is a successful result, any other status or an exception a failed one.
+ * Progress is printed every second and throughput with latency percentiles at the end.
+ */
+public class LoadRunner {
+    private static final Duration PROGRESS_INTERVAL = Duration.ofSeconds(1);
+
+    private final LoadRunnerOptions options;
+    private final PrintStream out;
+
+    public LoadRunner(LoadRunnerOptions options, PrintStream out) {
+        this.options = options;
+        this.out = out;
+    }
+
+    public TasksReport run() throws IOException {
+        if (!options.standIn()) {
+            return run(options.url());
+        }
+        try (var standIn = new StandInServer(options.standInLatency(), options.standInErrorRate())) {
+            out.printf("Stand-in target at %s, latency %s, error rate %.3f%n", standIn.uri(), options.standInLatency(), options.standInErrorRate());
+            return run(standIn.uri());
+        }
+    }
+
+    private TasksReport run(URI uri) {
+        final var rateLimiter = options.rate() > 0 ? new RateLimiter(options.rate()) : null;
+        final var request = HttpRequest.newBuilder(uri).timeout(options.requestTimeout()).GET().build();
+        final var progress = Executors.newSingleThreadScheduledExecutor(task -> {
+            final var thread = new Thread(task, "load-runner-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final TasksReport report;
+        final Duration elapsed;
+        try (var client = HttpClient.newBuilder().connectTimeout(options.requestTimeout()).build();
+             var collector = new ConcurrentSuccessfulTaskCollector<Integer>(options.concurrency(), Duration.ofSeconds(10), false)) {
+            final var startNanos = System.nanoTime();
+            final var collectionOptions = new CollectionOptions.Builder<Integer>()
+                    .withMinNumberOfResults(options.target())
+                    .withMaxAttempts(options.attempts());
+            if (options.duration() != null) {
+                collectionOptions.withDuration(options.duration());
+            }
+            if (rateLimiter != null) {
+                // paced before an attempt is reserved, so waiting for the limiter is not part of request latency
+                collectionOptions.withBeforeAttempt(rateLimiter::acquire);
+            }
+            final var run = collector.startCollecting(() -> send(client, request), collectionOptions.build());
+            final var intervalMillis = PROGRESS_INTERVAL.toMillis();
+            progress.scheduleAtFixedRate(() -> {
+                final var snapshot = run.snapshot();
+                out.printf("[%5.1fs] successful=%d failed=%d inFlight=%d attempts/s=%.1f%n",
+                        snapshot.getElapsed().toMillis() / 1000.0, snapshot.getSuccessful(), snapshot.getFailed(),
+                        snapshot.getInFlight(), snapshot.getAttemptsPerSecond());
+            }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+            report = run.awaitReport();
+            elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+        } finally {
+            progress.shutdownNow();
+        }
+        printSummary(report, elapsed);
+        return report;
+    }
+
+    /**
+     * @return status code of a 2xx response, null otherwise
+     */
+    private static Integer send(HttpClient client, HttpRequest request) {
+        try {
+            final var status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            return status / 100 == 2 ? status : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void printSummary(TasksReport report, Duration elapsed) {
+        final var count = report.getTasksCount();
+        final var seconds = Math.max(elapsed.toNanos(), 1) / 1_000_000_000.0;
+        out.printf("Finished in %s: successful=%d failed=%d%n", elapsed, count.getSuccessful(), count.getFailed());
+        out.printf("Throughput: %.1f requests/s, %.1f successful/s%n", count.attempts() / seconds, count.getSuccessful() / seconds);
+        printLatency("Success latency", report.getSuccessLatency());
+        printLatency("Failure latency", report.getFailureLatency());
+    }
+
+    private void printLatency(String label, LatencySnapshot latency) {
+        if (latency.getCount() == 0) {
+            return;
+        }
+        out.printf("%s: mean=%s p50=%s p90=%s p99=%s p999=%s max=%s%n", label, latency.getMean(), latency.getP50(),
+                latency.getP90(), latency.getP99(), latency.getP999(), latency.getMax());
+    }
+}
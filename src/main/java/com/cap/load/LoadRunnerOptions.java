@@ -0,0 +1,125 @@
+package com.cap.load;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Command-line options of the load runner, see {@link #USAGE}.
+ *
+ * @param url               endpoint to send GET requests to, null when only the stand-in target is used
+ * @param concurrency       number of requests in flight
+ * @param target            number of successful (2xx) responses to stop at, {@link Integer#MAX_VALUE} when not given
+ * @param attempts          maximum number of requests, {@link Integer#MAX_VALUE} when not given
+ * @param duration          maximum duration of the run, null when not given
+ * @param rate              maximum number of requests started per second, 0 for unlimited
+ * @param requestTimeout    timeout of a single request
+ * @param standIn           whether to start the local stand-in target and send requests to it
+ * @param standInLatency    response latency of the stand-in target
+ * @param standInErrorRate  fraction of stand-in responses with status 500
+ */
+public record LoadRunnerOptions(
+        URI url,
+        int concurrency,
+        int target,
+        int attempts,
+        Duration duration,
+        double rate,
+        Duration requestTimeout,
+        boolean standIn,
+        Duration standInLatency,
+        double standInErrorRate
+) {
+    public static final String USAGE = """
+            Usage: Application [--url=<url> | --stand-in] [options]
+              --url=<url>                  endpoint receiving GET requests, a 2xx status is a success
+              --concurrency=<n>            requests in flight (default 10)
+              --target=<n>                 stop after n successful responses
+              --attempts=<n>               stop after n requests
+              --duration=<time>            stop after time, e.g. 500ms, 30s, 5m
+              --rate=<n>                   start at most n requests per second
+              --timeout=<time>             timeout of a request (default 10s)
+              --stand-in                   start a local target instead of --url
+              --stand-in-latency=<time>    latency of the local target (default 10ms)
+              --stand-in-error-rate=<f>    fraction of failing responses of the local target (default 0.0)
+            At least one of --target, --attempts or --duration is required.""";
+
+    public LoadRunnerOptions {
+        if (url == null && !standIn) {
+            throw new IllegalArgumentException("--url or --stand-in is required");
+        }
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("--concurrency must be greater than 0");
+        }
+        if (target == Integer.MAX_VALUE && attempts == Integer.MAX_VALUE && duration == null) {
+            throw new IllegalArgumentException("at least one of --target, --attempts or --duration is required");
+        }
+        if (target != Integer.MAX_VALUE && target > attempts) {
+            throw new IllegalArgumentException("--target must not be greater than --attempts");
+        }
+        if (rate < 0) {
+            throw new IllegalArgumentException("--rate must not be negative");
+        }
+        if (standInErrorRate < 0 || standInErrorRate > 1) {
+            throw new IllegalArgumentException("--stand-in-error-rate must be between 0 and 1");
+        }
+    }
+
+    public static LoadRunnerOptions parse(String... args) {
+        URI url = null;
+        var concurrency = 10;
+        var target = Integer.MAX_VALUE;
+        var attempts = Integer.MAX_VALUE;
+        Duration duration = null;
+        var rate = 0.0;
+        var requestTimeout = Duration.ofSeconds(10);
+        var standIn = false;
+        var standInLatency = Duration.ofMillis(10);
+        var standInErrorRate = 0.0;
+        for (String arg : args) {
+            final var separator = arg.indexOf('=');
+            final var name = separator < 0 ? arg : arg.substring(0, separator);
+            final var value = separator < 0 ? null : arg.substring(separator + 1);
+            try {
+                switch (name) {
+                    case "--url" -> url = URI.create(required(name, value));
+                    case "--concurrency" -> concurrency = Integer.parseInt(required(name, value));
+                    case "--target" -> target = Integer.parseInt(required(name, value));
+                    case "--attempts" -> attempts = Integer.parseInt(required(name, value));
+                    case "--duration" -> duration = parseDuration(required(name, value));
+                    case "--rate" -> rate = Double.parseDouble(required(name, value));
+                    case "--timeout" -> requestTimeout = parseDuration(required(name, value));
+                    case "--stand-in" -> standIn = true;
+                    case "--stand-in-latency" -> standInLatency = parseDuration(required(name, value));
+                    case "--stand-in-error-rate" -> standInErrorRate = Double.parseDouble(required(name, value));
+                    default -> throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value of " + name + ": " + value, e);
+            }
+        }
+        return new LoadRunnerOptions(url, concurrency, target, attempts, duration, rate, requestTimeout, standIn, standInLatency, standInErrorRate);
+    }
+
+    private static String required(String name, String value) {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException(name + " requires a value");
+        }
+        return value;
+    }
+
+    /**
+     * @param value number followed by ms, s or m
+     */
+    static Duration parseDuration(String value) {
+        final var lowerCase = value.toLowerCase(Locale.ROOT);
+        if (lowerCase.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(lowerCase.substring(0, lowerCase.length() - 2)));
+        } else if (lowerCase.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(lowerCase.substring(0, lowerCase.length() - 1)));
+        } else if (lowerCase.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(lowerCase.substring(0, lowerCase.length() - 1)));
+        }
+        throw new NumberFormatException("Missing unit (ms, s or m) in " + value);
+    }
+}
@@ -0,0 +1,39 @@
+package com.cap.load;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Spaces out permits evenly, shared by all workers of a run.
+ * Every caller reserves the next free time slot with a CAS and sleeps until it comes, so there is no lock
+ * and no burst after an idle period: a slot in the past is moved to now, one caller at a time.
+ */
+public class RateLimiter {
+    private final long intervalNanos;
+    private final AtomicLong nextSlotNanos;
+
+    public RateLimiter(double permitsPerSecond) {
+        if (!(permitsPerSecond > 0)) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        this.intervalNanos = Math.max(1, Math.round(1_000_000_000 / permitsPerSecond));
+        this.nextSlotNanos = new AtomicLong(System.nanoTime());
+    }
+
+    public void acquire() {
+        long slot;
+        while (true) {
+            final var next = nextSlotNanos.get();
+            // idle for a while, start the schedule from now instead of letting the backlog of slots pass at once
+            slot = Math.max(next, System.nanoTime());
+            if (nextSlotNanos.compareAndSet(next, slot + intervalNanos)) {
+                break;
+            }
+        }
+        var waitNanos = slot - System.nanoTime();
+        while (waitNanos > 0) {
+            LockSupport.parkNanos(waitNanos);
+            waitNanos = slot - System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.cap.map;
+
+/**
+ * Thread-safe {@link LongLongMap} split into independently locked stripes, a replacement of
+ * {@code ConcurrentHashMap<Long, Long>} for counters updated with {@code merge(key, delta, Long::sum)}.
+ * <p>
+ * A key belongs to one stripe chosen by a hash independent of the slot hash inside the stripe, so stripes receive
+ * keys evenly and keys of one stripe still spread over all of its slots. Threads updating keys of different stripes
+ * do not contend, with {@code 4 * availableProcessors} stripes collisions of concurrent updates are rare.
+ * Operations on several stripes ({@link #size}, {@link #forEach}) lock one stripe at a time and are not atomic.
+ */
+public class ConcurrentLongLongMap {
+    private static final long STRIPE_MULTIPLIER = 0xC2B2AE3D27D4EB4FL;
+
+    private final LongLongMap[] stripes;
+    private final int stripeShift;
+
+    public ConcurrentLongLongMap() {
+        this(16, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param expectedSize number of entries the map holds without resizing
+     * @param stripes      rounded up to the next power of two
+     */
+    public ConcurrentLongLongMap(int expectedSize, int stripes) {
+        if (stripes <= 0 || stripes > 1 << 16) {
+            throw new IllegalArgumentException("stripes must be between 1 and 2^16");
+        }
+        final var stripeCount = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new LongLongMap[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new LongLongMap(expectedSize / stripeCount);
+        }
+        this.stripeShift = 64 - Integer.numberOfTrailingZeros(stripeCount);
+    }
+
+    public long getOrDefault(long key, long defaultValue) {
+        final var stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.getOrDefault(key, defaultValue);
+        }
+    }
+
+    public boolean containsKey(long key) {
+        final var stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.containsKey(key);
+        }
+    }
+
+    public void put(long key, long value) {
+        final var stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.put(key, value);
+        }
+    }
+
+    /**
+     * Adds {@code delta} to the value of {@code key} atomically, an absent key counts as 0.
+     *
+     * @return the new value
+     */
+    public long addTo(long key, long delta) {
+        final var stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.addTo(key, delta);
+        }
+    }
+
+    /**
+     * @return whether the key was present
+     */
+    public boolean remove(long key) {
+        final var stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.remove(key);
+        }
+    }
+
+    public int size() {
+        var size = 0;
+        for (LongLongMap stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Visits the entries stripe by stripe, each stripe is locked while its entries are visited.
+     */
+    public void forEach(LongLongMap.EntryConsumer action) {
+        for (LongLongMap stripe : stripes) {
+            synchronized (stripe) {
+                stripe.forEach(action);
+            }
+        }
+    }
+
+    private LongLongMap stripe(long key) {
+        // with a single stripe the shift is 64, which Java takes modulo 64
+        return stripes.length == 1 ? stripes[0] : stripes[(int) ((key * STRIPE_MULTIPLIER) >>> stripeShift)];
+    }
+}
@@ -0,0 +1,236 @@
+package com.cap.map;
+
+import com.cap.map.HashCodeReport.ContractViolation;
+import com.cap.map.HashCodeReport.SharedHash;
+import com.cap.map.HashCodeReport.TableReport;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Diagnoses how well {@code hashCode} of a key class spreads a sample of keys over {@link HashMap} buckets and checks
+ * the equals-hashCode contract, to catch keys with legal but poorly distributed hashes before they turn buckets
+ * into long chains or trees in production.
+ * <p>
+ * Buckets are computed like in {@link HashMap}: the hash is spread with {@code h ^ (h >>> 16)} and masked by
+ * the power-of-two table size. By default the table size is the one a {@link HashMap} holding the sample would have.
+ * <p>
+ * Contract checks compare every pair of the first {@code contractSampleSize} keys (equal keys with different hashes,
+ * asymmetric equals) and call {@code hashCode} twice on every key. With a mutation given, it is applied to every key
+ * after all other checks and a changed hash is reported, such a key is lost in a {@link HashMap} after mutation.
+ *
+ * @param <K> the type of keys
+ */
+public final class HashCodeAnalyzer<K> {
+    /**
+     * Bucket length at which {@link HashMap} converts a chain into a tree.
+     */
+    static final int TREEIFY_THRESHOLD = 8;
+
+    private final int[] tableSizes;
+    private final int contractSampleSize;
+    private final int reportedSharedHashes;
+    private final Consumer<K> mutation;
+
+    private HashCodeAnalyzer(int[] tableSizes, int contractSampleSize, int reportedSharedHashes, Consumer<K> mutation) {
+        this.tableSizes = tableSizes;
+        this.contractSampleSize = contractSampleSize;
+        this.reportedSharedHashes = reportedSharedHashes;
+        this.mutation = mutation;
+    }
+
+    /**
+     * @param sample keys as they are used in production, duplicates by {@code equals} are counted once;
+     *               mutated when a mutation was given
+     */
+    public HashCodeReport<K> analyze(List<K> sample) {
+        if (sample.isEmpty()) {
+            throw new IllegalArgumentException("sample must not be empty");
+        }
+        final var violations = new ArrayList<ContractViolation<K>>();
+        final var keys = distinctKeys(sample);
+        final var hashes = keys.stream().mapToInt(Object::hashCode).toArray();
+        for (int i = 0; i < keys.size(); i++) {
+            final var key = keys.get(i);
+            if (key.hashCode() != hashes[i]) {
+                violations.add(new ContractViolation<>(ContractViolation.Kind.UNSTABLE_HASH, key, key,
+                        "hashCode returned different values for an unchanged key"));
+            }
+        }
+        checkEqualsContract(sample, violations);
+        final var tables = Arrays.stream(tableSizes.length == 0 ? new int[]{hashMapTableSize(keys.size())} : tableSizes)
+                .mapToObj(size -> tableReport(hashes, size))
+                .toList();
+        final var sharedHashes = sharedHashes(keys, hashes);
+        if (mutation != null) {
+            for (int i = 0; i < keys.size(); i++) {
+                final var key = keys.get(i);
+                mutation.accept(key);
+                if (key.hashCode() != hashes[i]) {
+                    violations.add(new ContractViolation<>(ContractViolation.Kind.HASH_CHANGED_AFTER_MUTATION, key, key,
+                            "hashCode changed from %d to %d after mutation".formatted(hashes[i], key.hashCode())));
+                }
+            }
+        }
+        return new HashCodeReport<>(
+                sample.size(),
+                keys.size(),
+                (int) Arrays.stream(hashes).distinct().count(),
+                tables,
+                sharedHashes,
+                violations
+        );
+    }
+
+    /**
+     * Distinct by {@code equals} alone: a {@link HashSet} would trust the hashes under test.
+     * Keys are grouped by hash first and compared pairwise only when the sample is small enough.
+     */
+    private List<K> distinctKeys(List<K> sample) {
+        final var byHash = new HashMap<Integer, List<K>>();
+        final var distinct = new ArrayList<K>();
+        for (K key : sample) {
+            final var sameHash = byHash.computeIfAbsent(key.hashCode(), it -> new ArrayList<>());
+            if (sameHash.stream().noneMatch(key::equals)) {
+                sameHash.add(key);
+                distinct.add(key);
+            }
+        }
+        if (distinct.size() > contractSampleSize) {
+            return distinct;
+        }
+        // equal keys with different hashes land in different groups, keep the first of them only
+        final var withoutEqual = new ArrayList<K>();
+        for (K key : distinct) {
+            if (withoutEqual.stream().noneMatch(key::equals)) {
+                withoutEqual.add(key);
+            }
+        }
+        return withoutEqual;
+    }
+
+    private void checkEqualsContract(List<K> sample, List<ContractViolation<K>> violations) {
+        final var checked = sample.subList(0, Math.min(sample.size(), contractSampleSize));
+        for (int i = 0; i < checked.size(); i++) {
+            final var first = checked.get(i);
+            if (!first.equals(first)) {
+                violations.add(new ContractViolation<>(ContractViolation.Kind.NOT_REFLEXIVE, first, first,
+                        "key is not equal to itself"));
+            }
+            for (int j = i + 1; j < checked.size(); j++) {
+                final var second = checked.get(j);
+                final var equal = first.equals(second);
+                if (equal != second.equals(first)) {
+                    violations.add(new ContractViolation<>(ContractViolation.Kind.ASYMMETRIC_EQUALS, first, second,
+                            "equals is not symmetric"));
+                } else if (equal && first.hashCode() != second.hashCode()) {
+                    violations.add(new ContractViolation<>(ContractViolation.Kind.EQUAL_KEYS_WITH_DIFFERENT_HASHES, first, second,
+                            "equal keys have hashes %d and %d".formatted(first.hashCode(), second.hashCode())));
+                }
+            }
+        }
+    }
+
+    private static TableReport tableReport(int[] hashes, int tableSize) {
+        final var buckets = new int[tableSize];
+        for (int hash : hashes) {
+            buckets[(hash ^ (hash >>> 16)) & (tableSize - 1)]++;
+        }
+        var occupied = 0;
+        var longestChain = 0;
+        var treeified = 0;
+        var probes = 0L;
+        for (int chain : buckets) {
+            if (chain > 0) {
+                occupied++;
+                longestChain = Math.max(longestChain, chain);
+                // a successful lookup of the i-th key of a chain compares i keys
+                probes += (long) chain * (chain + 1) / 2;
+            }
+            if (chain >= TREEIFY_THRESHOLD) {
+                treeified++;
+            }
+        }
+        final var keys = hashes.length;
+        return new TableReport(
+                tableSize,
+                occupied,
+                longestChain,
+                treeified,
+                (double) probes / keys,
+                1 + (keys - 1) / (2.0 * tableSize)
+        );
+    }
+
+    private List<SharedHash<K>> sharedHashes(List<K> keys, int[] hashes) {
+        final var byHash = new HashMap<Integer, List<K>>();
+        for (int i = 0; i < keys.size(); i++) {
+            byHash.computeIfAbsent(hashes[i], it -> new ArrayList<>()).add(keys.get(i));
+        }
+        return byHash.entrySet().stream()
+                .filter(it -> it.getValue().size() > 1)
+                .sorted(Comparator.comparingInt((Map.Entry<Integer, List<K>> it) -> it.getValue().size()).reversed())
+                .limit(reportedSharedHashes)
+                .map(it -> new SharedHash<>(it.getKey(), it.getValue().size(), it.getValue().subList(0, Math.min(3, it.getValue().size()))))
+                .toList();
+    }
+
+    static int hashMapTableSize(int entries) {
+        final var minimum = (int) Math.ceil(entries / 0.75);
+        return Math.max(16, Integer.highestOneBit(Math.max(minimum - 1, 1)) << 1);
+    }
+
+    public static final class Builder<K> {
+        private int[] tableSizes = new int[0];
+        private int contractSampleSize = 2_000;
+        private int reportedSharedHashes = 10;
+        private Consumer<K> mutation;
+
+        /**
+         * @param tableSizes powers of two, by default the table size of a {@link HashMap} holding the sample
+         */
+        public Builder<K> withTableSizes(int... tableSizes) {
+            if (!Arrays.stream(tableSizes).allMatch(it -> it > 0 && Integer.bitCount(it) == 1)) {
+                throw new IllegalArgumentException("tableSizes must be positive powers of two: " + Arrays.toString(tableSizes));
+            }
+            this.tableSizes = tableSizes.clone();
+            return this;
+        }
+
+        /**
+         * @param contractSampleSize number of keys compared pairwise, the checks take quadratic time
+         */
+        public Builder<K> withContractSampleSize(int contractSampleSize) {
+            assert contractSampleSize >= 0;
+            this.contractSampleSize = contractSampleSize;
+            return this;
+        }
+
+        /**
+         * @param reportedSharedHashes number of largest groups of different keys sharing one full hash to report,
+         *                             keys of different hashes sharing a bucket show in the table statistics
+         */
+        public Builder<K> withReportedSharedHashes(int reportedSharedHashes) {
+            assert reportedSharedHashes >= 0;
+            this.reportedSharedHashes = reportedSharedHashes;
+            return this;
+        }
+
+        /**
+         * @param mutation changes a key in place the way production code does, e.g. a setter of a mutable key
+         */
+        public Builder<K> withMutation(Consumer<K> mutation) {
+            this.mutation = mutation;
+            return this;
+        }
+
+        public HashCodeAnalyzer<K> build() {
+            return new HashCodeAnalyzer<>(tableSizes, contractSampleSize, reportedSharedHashes, mutation);
+        }
+    }
+}
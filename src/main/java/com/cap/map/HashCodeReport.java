@@ -0,0 +1,116 @@
+package com.cap.map;
+
+import java.util.List;
+
+/**
+ * Result of {@link HashCodeAnalyzer#analyze}.
+ *
+ * @param sampleSize         number of keys in the sample
+ * @param distinctKeys       number of keys different by {@code equals}, the ones placed into tables
+ * @param distinctHashCodes  number of different hashes of the distinct keys
+ * @param tables             bucket statistics for every analyzed table size
+ * @param sharedHashes       largest groups of different keys with the same full hash, largest first;
+ *                           they collide at every table size, unlike keys that only share a bucket
+ * @param violations         broken equals-hashCode contracts
+ * @param <K>                the type of keys
+ */
+public record HashCodeReport<K>(
+        int sampleSize,
+        int distinctKeys,
+        int distinctHashCodes,
+        List<TableReport> tables,
+        List<SharedHash<K>> sharedHashes,
+        List<ContractViolation<K>> violations
+) {
+    /**
+     * A table is considered slow when lookups take twice the probes of a uniformly random hash or a bucket reaches
+     * the length at which {@link java.util.HashMap} converts it into a tree.
+     */
+    private static final double PROBE_RATIO_LIMIT = 2.0;
+
+    public HashCodeReport {
+        tables = List.copyOf(tables);
+        sharedHashes = List.copyOf(sharedHashes);
+        violations = List.copyOf(violations);
+    }
+
+    /**
+     * @return true when the contract holds and no analyzed table is slow
+     */
+    public boolean isHealthy() {
+        return violations.isEmpty() && tables.stream().noneMatch(TableReport::isSlow);
+    }
+
+    @Override
+    public String toString() {
+        final var text = new StringBuilder("keys=%d (distinct %d), distinct hashCodes=%d%n".formatted(sampleSize, distinctKeys, distinctHashCodes));
+        tables.forEach(it -> text.append("  ").append(it).append(System.lineSeparator()));
+        sharedHashes.forEach(it -> text.append("  ").append(it).append(System.lineSeparator()));
+        violations.forEach(it -> text.append("  ").append(it).append(System.lineSeparator()));
+        return text.toString();
+    }
+
+    /**
+     * @param occupiedBuckets       buckets holding at least one key
+     * @param longestChain          number of keys in the fullest bucket
+     * @param treeifiedBuckets      buckets long enough to be converted into trees
+     * @param expectedProbes        average number of keys compared by a successful lookup
+     * @param uniformExpectedProbes the same for a uniformly random hash, {@code 1 + (n - 1) / 2m}
+     */
+    public record TableReport(
+            int tableSize,
+            int occupiedBuckets,
+            int longestChain,
+            int treeifiedBuckets,
+            double expectedProbes,
+            double uniformExpectedProbes
+    ) {
+        public double occupancy() {
+            return (double) occupiedBuckets / tableSize;
+        }
+
+        public boolean isSlow() {
+            return expectedProbes > PROBE_RATIO_LIMIT * uniformExpectedProbes || longestChain >= HashCodeAnalyzer.TREEIFY_THRESHOLD;
+        }
+
+        @Override
+        public String toString() {
+            return "table=%d: occupancy=%.1f%%, longestChain=%d, treeifiedBuckets=%d, expectedProbes=%.2f (uniform %.2f)%s".formatted(
+                    tableSize, occupancy() * 100, longestChain, treeifiedBuckets, expectedProbes, uniformExpectedProbes, isSlow() ? " SLOW" : "");
+        }
+    }
+
+    /**
+     * @param keys     number of different keys with the full hash
+     * @param examples up to 3 of them
+     */
+    public record SharedHash<K>(int hash, int keys, List<K> examples) {
+        public SharedHash {
+            examples = List.copyOf(examples);
+        }
+
+        @Override
+        public String toString() {
+            return "hashCode=%d shared by %d keys, e.g. %s".formatted(hash, keys, examples);
+        }
+    }
+
+    /**
+     * @param first  key breaking the contract
+     * @param second the other key of the pair, the same key for violations of a single key
+     */
+    public record ContractViolation<K>(Kind kind, K first, K second, String description) {
+        public enum Kind {
+            EQUAL_KEYS_WITH_DIFFERENT_HASHES,
+            ASYMMETRIC_EQUALS,
+            NOT_REFLEXIVE,
+            UNSTABLE_HASH,
+            HASH_CHANGED_AFTER_MUTATION
+        }
+
+        @Override
+        public String toString() {
+            return "%s: %s (%s, %s)".formatted(kind, description, first, second);
+        }
+    }
+}
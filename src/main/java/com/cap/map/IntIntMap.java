@@ -0,0 +1,241 @@
+package com.cap.map;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from {@code int} to {@code int}, a replacement of {@code HashMap<Integer, Integer>} for counting
+ * tables like {@code sumReadHowManyTimes} in {@code LocksTests}.
+ * <p>
+ * Keys and values live in two parallel arrays, so an entry takes 8 bytes per slot instead of a node and two boxes,
+ * and {@link #addTo} updates a counter with a single lookup and no allocation.
+ * Collisions are resolved by linear probing: neighbouring slots share cache lines, which makes a probe sequence cheaper
+ * than chasing a bucket's chain. Slots are chosen by Fibonacci hashing (multiplication by 2^32 / golden ratio, top bits),
+ * which spreads sequential and strided keys evenly. Removal shifts the following entries back instead of leaving
+ * tombstones, so lookups never slow down after many removals.
+ * <p>
+ * Key 0 marks a free slot and its entry is kept outside of the arrays. Not thread-safe, see {@link ConcurrentLongLongMap}.
+ */
+public class IntIntMap {
+    private static final int FREE_KEY = 0;
+    private static final int PHI = 0x9E3779B9;
+    private static final double MAX_LOAD_FACTOR = 0.7;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private int[] keys;
+    private int[] values;
+    private int shift;
+    private int mask;
+    private int resizeAt;
+    private int size;
+    private boolean hasFreeKey;
+    private int freeKeyValue;
+
+    public IntIntMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize number of entries the map holds without resizing
+     */
+    public IntIntMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expectedSize must not be negative");
+        }
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int getOrDefault(int key, int defaultValue) {
+        if (key == FREE_KEY) {
+            return hasFreeKey ? freeKeyValue : defaultValue;
+        }
+        final var slot = find(key);
+        return slot < 0 ? defaultValue : values[slot];
+    }
+
+    public boolean containsKey(int key) {
+        return key == FREE_KEY ? hasFreeKey : find(key) >= 0;
+    }
+
+    public void put(int key, int value) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                size++;
+            }
+            freeKeyValue = value;
+            return;
+        }
+        // the slot first: insertion may resize and replace the arrays
+        final var slot = insertionSlot(key);
+        values[slot] = value;
+    }
+
+    /**
+     * Adds {@code delta} to the value of {@code key}, an absent key counts as 0.
+     *
+     * @return the new value
+     */
+    public int addTo(int key, int delta) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                freeKeyValue = 0;
+                size++;
+            }
+            return freeKeyValue += delta;
+        }
+        final var slot = insertionSlot(key);
+        return values[slot] += delta;
+    }
+
+    /**
+     * @return whether the key was present
+     */
+    public boolean remove(int key) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                return false;
+            }
+            hasFreeKey = false;
+            size--;
+            return true;
+        }
+        final var slot = find(key);
+        if (slot < 0) {
+            return false;
+        }
+        shiftBack(slot);
+        size--;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        hasFreeKey = false;
+        size = 0;
+    }
+
+    public void forEach(EntryConsumer action) {
+        if (hasFreeKey) {
+            action.accept(FREE_KEY, freeKeyValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FREE_KEY) {
+                action.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    /**
+     * @return number of slots of the tables, the map uses {@code 8 * capacity()} bytes plus object headers
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    private int slot(int key) {
+        return (key * PHI) >>> shift;
+    }
+
+    private int find(int key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            final var current = keys[slot];
+            if (current == key) {
+                return slot;
+            }
+            if (current == FREE_KEY) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * @return slot of the key, claimed with value 0 when the key was absent
+     */
+    private int insertionSlot(int key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            final var current = keys[slot];
+            if (current == key) {
+                return slot;
+            }
+            if (current == FREE_KEY) {
+                if (size >= resizeAt) {
+                    resize(keys.length * 2);
+                    return insertionSlot(key);
+                }
+                keys[slot] = key;
+                values[slot] = 0;
+                size++;
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Backward-shift deletion: moves every following entry of the probe sequence that may live in the gap into it.
+     */
+    private void shiftBack(int gap) {
+        for (int slot = (gap + 1) & mask; ; slot = (slot + 1) & mask) {
+            final var key = keys[slot];
+            if (key == FREE_KEY) {
+                keys[gap] = FREE_KEY;
+                return;
+            }
+            // the entry can move when its home slot is not between the gap and its current slot
+            if (((slot - slot(key)) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = key;
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        if (keys.length == MAX_CAPACITY) {
+            throw new IllegalStateException("Maximum capacity reached");
+        }
+        final var oldKeys = keys;
+        final var oldValues = values;
+        allocate(capacity);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            final var key = oldKeys[slot];
+            if (key != FREE_KEY) {
+                var newSlot = slot(key);
+                while (keys[newSlot] != FREE_KEY) {
+                    newSlot = (newSlot + 1) & mask;
+                }
+                keys[newSlot] = key;
+                values[newSlot] = oldValues[slot];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+        resizeAt = Math.min((int) (capacity * MAX_LOAD_FACTOR), capacity - 1);
+    }
+
+    static int capacityFor(int expectedSize) {
+        final var minimum = Math.max(2, (long) Math.ceil(expectedSize / MAX_LOAD_FACTOR) + 1);
+        if (minimum > MAX_CAPACITY) {
+            throw new IllegalArgumentException("expectedSize too large: " + expectedSize);
+        }
+        return Integer.highestOneBit((int) minimum - 1) << 1;
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(int key, int value);
+    }
+}
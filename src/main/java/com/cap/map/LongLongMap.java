@@ -0,0 +1,225 @@
+package com.cap.map;
+
+import java.util.Arrays;
+
+/**
+ * {@link IntIntMap} for {@code long} keys and values, see there for the layout and the algorithms.
+ * Only the sizes differ: an entry takes 16 bytes per slot and Fibonacci hashing multiplies by 2^64 / golden ratio.
+ * Not thread-safe, see {@link ConcurrentLongLongMap}.
+ */
+public class LongLongMap {
+    private static final long FREE_KEY = 0;
+    private static final long PHI = 0x9E3779B97F4A7C15L;
+    private static final double MAX_LOAD_FACTOR = 0.7;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private long[] keys;
+    private long[] values;
+    private int shift;
+    private int mask;
+    private int resizeAt;
+    private int size;
+    private boolean hasFreeKey;
+    private long freeKeyValue;
+
+    public LongLongMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize number of entries the map holds without resizing
+     */
+    public LongLongMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expectedSize must not be negative");
+        }
+        allocate(IntIntMap.capacityFor(expectedSize));
+    }
+
+    public long getOrDefault(long key, long defaultValue) {
+        if (key == FREE_KEY) {
+            return hasFreeKey ? freeKeyValue : defaultValue;
+        }
+        final var slot = find(key);
+        return slot < 0 ? defaultValue : values[slot];
+    }
+
+    public boolean containsKey(long key) {
+        return key == FREE_KEY ? hasFreeKey : find(key) >= 0;
+    }
+
+    public void put(long key, long value) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                size++;
+            }
+            freeKeyValue = value;
+            return;
+        }
+        // the slot first: insertion may resize and replace the arrays
+        final var slot = insertionSlot(key);
+        values[slot] = value;
+    }
+
+    /**
+     * Adds {@code delta} to the value of {@code key}, an absent key counts as 0.
+     *
+     * @return the new value
+     */
+    public long addTo(long key, long delta) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                hasFreeKey = true;
+                freeKeyValue = 0;
+                size++;
+            }
+            return freeKeyValue += delta;
+        }
+        final var slot = insertionSlot(key);
+        return values[slot] += delta;
+    }
+
+    /**
+     * @return whether the key was present
+     */
+    public boolean remove(long key) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                return false;
+            }
+            hasFreeKey = false;
+            size--;
+            return true;
+        }
+        final var slot = find(key);
+        if (slot < 0) {
+            return false;
+        }
+        shiftBack(slot);
+        size--;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        hasFreeKey = false;
+        size = 0;
+    }
+
+    public void forEach(EntryConsumer action) {
+        if (hasFreeKey) {
+            action.accept(FREE_KEY, freeKeyValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != FREE_KEY) {
+                action.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    /**
+     * @return number of slots of the tables, the map uses {@code 16 * capacity()} bytes plus object headers
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    private int slot(long key) {
+        return (int) ((key * PHI) >>> shift);
+    }
+
+    private int find(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            final var current = keys[slot];
+            if (current == key) {
+                return slot;
+            }
+            if (current == FREE_KEY) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * @return slot of the key, claimed with value 0 when the key was absent
+     */
+    private int insertionSlot(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            final var current = keys[slot];
+            if (current == key) {
+                return slot;
+            }
+            if (current == FREE_KEY) {
+                if (size >= resizeAt) {
+                    resize(keys.length * 2);
+                    return insertionSlot(key);
+                }
+                keys[slot] = key;
+                values[slot] = 0;
+                size++;
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Backward-shift deletion as in {@code IntIntMap}.
+     */
+    private void shiftBack(int gap) {
+        for (int slot = (gap + 1) & mask; ; slot = (slot + 1) & mask) {
+            final var key = keys[slot];
+            if (key == FREE_KEY) {
+                keys[gap] = FREE_KEY;
+                return;
+            }
+            // the entry can move when its home slot is not between the gap and its current slot
+            if (((slot - slot(key)) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = key;
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        if (keys.length == MAX_CAPACITY) {
+            throw new IllegalStateException("Maximum capacity reached");
+        }
+        final var oldKeys = keys;
+        final var oldValues = values;
+        allocate(capacity);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            final var key = oldKeys[slot];
+            if (key != FREE_KEY) {
+                var newSlot = slot(key);
+                while (keys[newSlot] != FREE_KEY) {
+                    newSlot = (newSlot + 1) & mask;
+                }
+                keys[newSlot] = key;
+                values[newSlot] = oldValues[slot];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        shift = Long.numberOfLeadingZeros(capacity) + 1;
+        resizeAt = Math.min((int) (capacity * MAX_LOAD_FACTOR), capacity - 1);
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, long value);
+    }
+}
@@ -0,0 +1,199 @@
+package com.cap.map;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Map for shared lookup tables that are read far more often than written, replacing a {@link HashMap} guarded by
+ * {@link java.util.concurrent.locks.ReentrantReadWriteLock} as in {@code LocksTests}.
+ * <p>
+ * Readers access an immutable snapshot through one volatile read. Unlike a read lock, a read writes nothing to shared
+ * memory, so readers on different cores do not invalidate each other's cache lines and reads scale with the number of
+ * cores. {@link java.util.concurrent.locks.StampedLock} optimistic reads would avoid the writes too, but a
+ * {@link HashMap} read racing with a resize may fail or loop before the stamp is validated.
+ * <p>
+ * A write copies the snapshot, applies the change to the copy and publishes it. To amortize the copy, writes are
+ * combined: a writer queues its mutation and whoever holds the write lock applies all queued mutations to one copy,
+ * so concurrent writers pay for a single copy. {@link #update} batches mutations of one thread explicitly.
+ * Every write returns after its mutation is visible to readers, a failure of one mutation is rethrown to its writer only
+ * and does not affect the others combined with it. Null keys and values are not permitted, looking them up finds nothing.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class ReadMostlyMap<K, V> extends AbstractMap<K, V> {
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ConcurrentLinkedQueue<Mutation<K, V>> pending = new ConcurrentLinkedQueue<>();
+    private volatile Map<K, V> snapshot = new HashMap<>();
+    private volatile long version;
+
+    public ReadMostlyMap() {
+    }
+
+    public ReadMostlyMap(Map<? extends K, ? extends V> initial) {
+        putAll(initial);
+    }
+
+    @Override
+    public V get(Object key) {
+        return snapshot.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return snapshot.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * @return unmodifiable view of the entries of the current snapshot, not affected by later writes
+     */
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return Collections.unmodifiableMap(snapshot).entrySet();
+    }
+
+    /**
+     * @return the current snapshot, an unmodifiable map not affected by later writes
+     */
+    public Map<K, V> snapshot() {
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * @return number of snapshots published so far, at most the number of writes
+     */
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(value);
+        return apply(map -> map.put(key, value), false);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return apply(map -> map.remove(key), false);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        // copied by the caller, so a map modified concurrently fails here and not half-way in the combined write
+        final var copied = new HashMap<K, V>(entries);
+        copied.forEach((key, value) -> {
+            Objects.requireNonNull(key);
+            Objects.requireNonNull(value);
+        });
+        apply(map -> {
+            map.putAll(copied);
+            return null;
+        }, false);
+    }
+
+    @Override
+    public void clear() {
+        apply(map -> {
+            map.clear();
+            return null;
+        }, false);
+    }
+
+    /**
+     * Applies several mutations with one copy of the snapshot, readers see all of them or none.
+     *
+     * @param batch mutates a private copy of the current snapshot, must not keep a reference to it
+     */
+    public void update(Consumer<Map<K, V>> batch) {
+        apply(map -> {
+            batch.accept(map);
+            map.forEach((key, value) -> {
+                Objects.requireNonNull(key);
+                Objects.requireNonNull(value);
+            });
+            return null;
+        }, true);
+    }
+
+    /**
+     * @param batch whether the change runs caller code that may fail half-way, then it is applied to its own copy
+     */
+    private V apply(Function<Map<K, V>, V> change, boolean batch) {
+        final var mutation = new Mutation<K, V>(change, batch);
+        pending.add(mutation);
+        writeLock.lock();
+        try {
+            if (!mutation.applied) {
+                combine();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        if (mutation.failure instanceof RuntimeException e) {
+            throw e;
+        }
+        if (mutation.failure instanceof Error e) {
+            throw e;
+        }
+        return mutation.result;
+    }
+
+    /**
+     * Applies every queued mutation, including ones queued by writers still waiting for the lock, which then find
+     * theirs applied. Results and {@code applied} are read by those writers after they acquire the lock, so plain fields suffice.
+     * The snapshot is copied once, when the first mutation needs it, so a single batch costs a single copy.
+     */
+    private void combine() {
+        HashMap<K, V> copy = null;
+        Mutation<K, V> mutation;
+        while ((mutation = pending.poll()) != null) {
+            try {
+                if (mutation.batch) {
+                    // a failed batch must not leave its partial changes for the others
+                    final var batchCopy = new HashMap<>(copy != null ? copy : snapshot);
+                    mutation.change.apply(batchCopy);
+                    copy = batchCopy;
+                } else {
+                    if (copy == null) {
+                        copy = new HashMap<>(snapshot);
+                    }
+                    mutation.result = mutation.change.apply(copy);
+                }
+            } catch (RuntimeException | Error e) {
+                mutation.failure = e;
+            }
+            mutation.applied = true;
+        }
+        if (copy != null) {
+            snapshot = copy;
+            version++;
+        }
+    }
+
+    private static final class Mutation<K, V> {
+        private final Function<Map<K, V>, V> change;
+        private final boolean batch;
+        private V result;
+        private Throwable failure;
+        private boolean applied;
+
+        private Mutation(Function<Map<K, V>, V> change, boolean batch) {
+            this.change = change;
+            this.batch = batch;
+        }
+    }
+}
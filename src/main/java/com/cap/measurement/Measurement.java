@@ -0,0 +1,156 @@
+package com.cap.measurement;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Repeated measurement of a task executed by several threads at once, replacing single-shot timing with
+ * {@link com.cap.ExecutionDuration}.
+ * <p>
+ * Every iteration starts {@code threads} new threads which wait on a barrier, so thread creation and start are not timed.
+ * An iteration lasts from the moment the barrier opens until the last thread finishes the task, measured with {@link System#nanoTime()}.
+ * Warmup iterations are executed first and not reported, giving the JIT a chance to compile the task.
+ * Allocated bytes of the measuring threads and GC activity are collected during the measured iterations only.
+ */
+public final class Measurement {
+    private final int warmupIterations;
+    private final int measuredIterations;
+    private final int threads;
+
+    private Measurement(int warmupIterations, int measuredIterations, int threads) {
+        this.warmupIterations = warmupIterations;
+        this.measuredIterations = measuredIterations;
+        this.threads = threads;
+    }
+
+    /**
+     * @param task Executed once per iteration by each of the threads
+     * @return durations of measured iterations with allocation and GC statistics
+     */
+    public MeasurementResult measure(Runnable task) {
+        for (int i = 0; i < warmupIterations; i++) {
+            runIteration(task, new AtomicLong());
+        }
+        final var allocatedBytes = new AtomicLong();
+        final var gcCountBefore = gcCount();
+        final var gcMillisBefore = gcMillis();
+        final var iterations = new ArrayList<Duration>(measuredIterations);
+        for (int i = 0; i < measuredIterations; i++) {
+            iterations.add(runIteration(task, allocatedBytes));
+        }
+        return new MeasurementResult(
+                iterations,
+                threads,
+                allocatedBytes.get(),
+                gcCount() - gcCountBefore,
+                Duration.ofMillis(gcMillis() - gcMillisBefore)
+        );
+    }
+
+    private Duration runIteration(Runnable task, AtomicLong allocatedBytes) {
+        final var startNanos = new AtomicLong();
+        final var endNanos = new AtomicLong(Long.MIN_VALUE);
+        final var failure = new AtomicReference<Throwable>();
+        final var barrier = new CyclicBarrier(threads, () -> startNanos.set(System.nanoTime()));
+        final var iterationThreads = new ArrayList<Thread>(threads);
+        for (int i = 0; i < threads; i++) {
+            iterationThreads.add(new Thread(() -> {
+                try {
+                    barrier.await();
+                    final var allocatedBefore = AllocationCounter.currentThreadAllocatedBytes();
+                    task.run();
+                    final var now = System.nanoTime();
+                    allocatedBytes.addAndGet(AllocationCounter.currentThreadAllocatedBytes() - allocatedBefore);
+                    endNanos.accumulateAndGet(now, Math::max);
+                } catch (InterruptedException | BrokenBarrierException e) {
+                    failure.compareAndSet(null, e);
+                    Thread.currentThread().interrupt();
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, "measurement-thread-" + i));
+        }
+        iterationThreads.forEach(Thread::start);
+        try {
+            for (Thread thread : iterationThreads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for measured threads", e);
+        }
+        if (failure.get() != null) {
+            throw new IllegalStateException("Measured task failed", failure.get());
+        }
+        return Duration.ofNanos(endNanos.get() - startNanos.get());
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .filter(it -> it > 0)
+                .sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .filter(it -> it > 0)
+                .sum();
+    }
+
+    /**
+     * Reads allocated bytes of the current thread when the JVM supports it, see {@link com.sun.management.ThreadMXBean}.
+     */
+    private static final class AllocationCounter {
+        private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = threadMXBean();
+
+        private static com.sun.management.ThreadMXBean threadMXBean() {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                    && bean.isThreadAllocatedMemorySupported()) {
+                bean.setThreadAllocatedMemoryEnabled(true);
+                return bean;
+            }
+            return null;
+        }
+
+        static long currentThreadAllocatedBytes() {
+            return THREAD_MX_BEAN == null ? 0 : THREAD_MX_BEAN.getCurrentThreadAllocatedBytes();
+        }
+    }
+
+    public static final class Builder {
+        private int warmupIterations = 3;
+        private int measuredIterations = 10;
+        private int threads = 1;
+
+        public Builder withWarmupIterations(int warmupIterations) {
+            assert warmupIterations >= 0;
+            this.warmupIterations = warmupIterations;
+            return this;
+        }
+
+        public Builder withMeasuredIterations(int measuredIterations) {
+            assert measuredIterations > 0;
+            this.measuredIterations = measuredIterations;
+            return this;
+        }
+
+        public Builder withThreads(int threads) {
+            assert threads > 0;
+            this.threads = threads;
+            return this;
+        }
+
+        public Measurement build() {
+            return new Measurement(warmupIterations, measuredIterations, threads);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.cap.measurement;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Durations of measured iterations of a {@link Measurement} with statistics over them.
+ *
+ * @param iterations     duration of every measured iteration in execution order
+ * @param threads        number of threads executing the task in every iteration
+ * @param allocatedBytes bytes allocated by all measured threads together during all measured iterations, 0 when the JVM does not report it
+ * @param gcCount        number of garbage collections during the measured iterations, of the whole JVM
+ * @param gcTime         approximate accumulated time of those collections
+ */
+public record MeasurementResult(List<Duration> iterations, int threads, long allocatedBytes, long gcCount, Duration gcTime) {
+
+    public MeasurementResult {
+        assert !iterations.isEmpty();
+        assert threads > 0;
+        iterations = List.copyOf(iterations);
+    }
+
+    public Duration mean() {
+        return Duration.ofNanos(Math.round(meanNanos()));
+    }
+
+    /**
+     * Sample standard deviation, zero for a single iteration.
+     */
+    public Duration standardDeviation() {
+        if (iterations.size() == 1) {
+            return Duration.ZERO;
+        }
+        final var mean = meanNanos();
+        final var sumOfSquares = iterations.stream()
+                .mapToDouble(it -> Math.pow(it.toNanos() - mean, 2))
+                .sum();
+        return Duration.ofNanos(Math.round(Math.sqrt(sumOfSquares / (iterations.size() - 1))));
+    }
+
+    /**
+     * Nearest-rank percentile, e.g. {@code percentile(50)} is the median and {@code percentile(100)} the slowest iteration.
+     */
+    public Duration percentile(double percentile) {
+        assert percentile > 0 && percentile <= 100;
+        final var sorted = iterations.stream().sorted().toList();
+        final var rank = (int) Math.ceil(percentile / 100 * sorted.size());
+        return sorted.get(Math.max(rank, 1) - 1);
+    }
+
+    public Duration min() {
+        return iterations.stream().min(Comparator.naturalOrder()).orElseThrow();
+    }
+
+    public Duration max() {
+        return percentile(100);
+    }
+
+    /**
+     * Bytes allocated by a single execution of the task, that is by one thread in one iteration.
+     */
+    public long allocatedBytesPerExecution() {
+        return allocatedBytes / ((long) iterations.size() * threads);
+    }
+
+    @Override
+    public String toString() {
+        return "mean=%s, stddev=%s, p50=%s, p90=%s, max=%s, allocatedBytesPerExecution=%d, gcCount=%d, gcTime=%s".formatted(
+                mean(), standardDeviation(), percentile(50), percentile(90), max(), allocatedBytesPerExecution(), gcCount, gcTime);
+    }
+
+    private double meanNanos() {
+        return iterations.stream().mapToLong(Duration::toNanos).average().orElseThrow();
+    }
+}
@@ -0,0 +1,171 @@
+package com.cap.queue;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BlockingQueue} on top of {@link MpmcRingBuffer}, a lock-free replacement of
+ * {@link java.util.concurrent.ArrayBlockingQueue} and of monitor-based handoff like {@code WaitNotifyTest.SimpleBlockingQueue}.
+ * <p>
+ * Blocking operations retry the non-blocking ones and wait with the {@link WaitStrategy} in between, checking for
+ * interruption after every wait, the number of attempts passed to the strategy saturates at {@link Integer#MAX_VALUE}.
+ * {@link #remove(Object)} leaves a tombstone in the slot of the element (see {@link MpmcRingBuffer}), so removal by
+ * {@link java.util.concurrent.ThreadPoolExecutor#remove}, {@code purge} and {@code shutdownNow} works as with
+ * {@link java.util.concurrent.ArrayBlockingQueue}, but the slot is not available to producers until a consumer passes it.
+ * The iterator is weakly consistent, it iterates over a snapshot and its {@link Iterator#remove()} removes an element
+ * equal to the last returned one.
+ *
+ * @param <E> the type of elements
+ */
+public class MpmcBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+    private final MpmcRingBuffer<E> ringBuffer;
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * @param capacity rounded up to the next power of two, at least 2
+     */
+    public MpmcBlockingQueue(int capacity, WaitStrategy waitStrategy) {
+        this.ringBuffer = new MpmcRingBuffer<>(capacity);
+        this.waitStrategy = waitStrategy;
+    }
+
+    @Override
+    public boolean offer(E element) {
+        return ringBuffer.offer(element);
+    }
+
+    @Override
+    public E poll() {
+        return ringBuffer.poll();
+    }
+
+    @Override
+    public E peek() {
+        return ringBuffer.peek();
+    }
+
+    @Override
+    public void put(E element) throws InterruptedException {
+        for (int attempt = 0; !ringBuffer.offer(element); attempt = next(attempt)) {
+            idle(attempt);
+        }
+    }
+
+    @Override
+    public boolean offer(E element, long timeout, TimeUnit unit) throws InterruptedException {
+        final var deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+        for (int attempt = 0; !ringBuffer.offer(element); attempt = next(attempt)) {
+            if (System.nanoTime() - deadlineNanos >= 0) {
+                return false;
+            }
+            idle(attempt);
+        }
+        return true;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E element;
+        for (int attempt = 0; (element = ringBuffer.poll()) == null; attempt = next(attempt)) {
+            idle(attempt);
+        }
+        return element;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        final var deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+        E element;
+        for (int attempt = 0; (element = ringBuffer.poll()) == null; attempt = next(attempt)) {
+            if (System.nanoTime() - deadlineNanos >= 0) {
+                return null;
+            }
+            idle(attempt);
+        }
+        return element;
+    }
+
+    private static int next(int attempt) {
+        return attempt == Integer.MAX_VALUE ? attempt : attempt + 1;
+    }
+
+    private void idle(int attempt) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        waitStrategy.idle(attempt);
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return ringBuffer.capacity() - ringBuffer.occupiedSlots();
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> collection) {
+        return drainTo(collection, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> collection, int maxElements) {
+        if (collection == this) {
+            throw new IllegalArgumentException("cannot drain a queue to itself");
+        }
+        int drained = 0;
+        E element;
+        while (drained < maxElements && (element = ringBuffer.poll()) != null) {
+            collection.add(element);
+            drained++;
+        }
+        return drained;
+    }
+
+    @Override
+    public boolean remove(Object element) {
+        return ringBuffer.remove(element);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        final var snapshot = new ArrayList<E>();
+        ringBuffer.forEachPublished(snapshot::add);
+        final var iterator = snapshot.iterator();
+        return new Iterator<>() {
+            private E last;
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public E next() {
+                last = iterator.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null) {
+                    throw new IllegalStateException();
+                }
+                ringBuffer.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return ringBuffer.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return ringBuffer.isEmpty();
+    }
+}
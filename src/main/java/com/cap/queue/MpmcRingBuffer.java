@@ -0,0 +1,277 @@
+package com.cap.queue;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free multi-producer multi-consumer queue on a preallocated ring of slots (D. Vyukov's algorithm).
+ * <p>
+ * Every slot has a sequence number telling which lap of the ring it is ready for: a producer at position {@code p}
+ * may fill the slot when its sequence is {@code p}, a consumer may empty it when the sequence is {@code p + 1}.
+ * Producers and consumers claim positions with a CAS on {@code tail} and {@code head} respectively and publish the slot
+ * by a release write of its sequence, so an element costs no allocation and no lock, and producers contend with
+ * consumers only when the queue is empty or full.
+ * <p>
+ * {@code head} and {@code tail} are padded to separate cache lines, otherwise every offer would invalidate the line
+ * polled by consumers (false sharing). Padding is done by class hierarchy because the JVM does not reorder fields across
+ * superclasses, {@code @Contended} would need {@code -XX:-RestrictContended}.
+ * <p>
+ * The queue never waits: {@link #offer} fails when full and {@link #poll} when empty, see {@link MpmcBlockingQueue}
+ * for waiting with a {@link WaitStrategy}. Null elements are not permitted.
+ * <p>
+ * {@link #remove(Object)} cannot take an element out of the middle of the ring without breaking the sequence protocol,
+ * it swaps the element for a tombstone with a CAS instead. Consumers take elements with an atomic swap too, so an element
+ * is either removed or polled, never both, and they skip tombstones. A tombstone keeps its slot until a consumer
+ * passes it, it is not counted by {@link #size()}.
+ *
+ * @param <E> the type of elements
+ */
+public final class MpmcRingBuffer<E> extends HeadPadding {
+    private static final VarHandle SEQUENCE = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle ELEMENT = MethodHandles.arrayElementVarHandle(Object[].class);
+    private static final Object REMOVED = new Object();
+
+    private final long[] sequences;
+    private final Object[] elements;
+    private final int mask;
+    private final AtomicInteger tombstones = new AtomicInteger();
+
+    /**
+     * @param capacity rounded up to the next power of two, so that the slot of a position is a bit mask away, and to at least 2:
+     *                 with a single slot the sequence of a full slot would equal the one expected by the producer of the next lap
+     */
+    public MpmcRingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+        final var size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.sequences = new long[size];
+        this.elements = new Object[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences[i] = i;
+        }
+    }
+
+    /**
+     * @return false when the queue is full
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        var position = tail();
+        while (true) {
+            final var index = (int) position & mask;
+            final var difference = (long) SEQUENCE.getAcquire(sequences, index) - position;
+            if (difference == 0) {
+                if (casTail(position, position + 1)) {
+                    ELEMENT.set(elements, index, element);
+                    SEQUENCE.setRelease(sequences, index, position + 1);
+                    return true;
+                }
+                position = tail();
+            } else if (difference < 0) {
+                // the slot still holds the element of the previous lap
+                return false;
+            } else {
+                // another producer claimed the position
+                position = tail();
+            }
+        }
+    }
+
+    /**
+     * @return the oldest element or null when the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        var position = head();
+        while (true) {
+            final var index = (int) position & mask;
+            final var difference = (long) SEQUENCE.getAcquire(sequences, index) - (position + 1);
+            if (difference == 0) {
+                if (casHead(position, position + 1)) {
+                    final var element = ELEMENT.getAndSet(elements, index, null);
+                    SEQUENCE.setRelease(sequences, index, position + mask + 1);
+                    if (element != REMOVED) {
+                        return (E) element;
+                    }
+                    tombstones.decrementAndGet();
+                }
+                position = head();
+            } else if (difference < 0) {
+                // the slot was not filled in this lap yet
+                return null;
+            } else {
+                position = head();
+            }
+        }
+    }
+
+    /**
+     * @return the oldest element without removing it or null when the queue is empty, the element may be polled concurrently
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        while (true) {
+            final var position = head();
+            final var index = (int) position & mask;
+            final var sequence = (long) SEQUENCE.getAcquire(sequences, index);
+            if (sequence - (position + 1) < 0) {
+                return null;
+            }
+            final var element = ELEMENT.getAcquire(elements, index);
+            if (element != null && (long) SEQUENCE.getAcquire(sequences, index) == position + 1) {
+                if (element != REMOVED) {
+                    return (E) element;
+                }
+                // the tombstone hides the next element, pass it like poll would
+                if (casHead(position, position + 1)) {
+                    ELEMENT.set(elements, index, null);
+                    SEQUENCE.setRelease(sequences, index, position + mask + 1);
+                    tombstones.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the oldest published element equal to {@code element} with a tombstone.
+     *
+     * @return false when no equal element was found, including one polled or removed concurrently
+     */
+    public boolean remove(Object element) {
+        if (element == null) {
+            return false;
+        }
+        final var tail = tail();
+        for (var position = head(); position < tail; position++) {
+            final var index = (int) position & mask;
+            if ((long) SEQUENCE.getAcquire(sequences, index) != position + 1) {
+                continue;
+            }
+            final var candidate = ELEMENT.getAcquire(elements, index);
+            if (candidate == null || candidate == REMOVED || (long) SEQUENCE.getAcquire(sequences, index) != position + 1) {
+                continue;
+            }
+            // fails when a consumer swapped the element out in between
+            if (element.equals(candidate) && ELEMENT.compareAndSet(elements, index, candidate, REMOVED)) {
+                tombstones.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Weakly consistent copy of elements between {@code head} and {@code tail}, used for iteration only.
+     */
+    @SuppressWarnings("unchecked")
+    void forEachPublished(Consumer<? super E> action) {
+        final var tail = tail();
+        for (var position = head(); position < tail; position++) {
+            final var index = (int) position & mask;
+            if ((long) SEQUENCE.getAcquire(sequences, index) != position + 1) {
+                continue;
+            }
+            final var element = ELEMENT.getAcquire(elements, index);
+            if (element != null && element != REMOVED && (long) SEQUENCE.getAcquire(sequences, index) == position + 1) {
+                action.accept((E) element);
+            }
+        }
+    }
+
+    /**
+     * @return number of elements at some moment during the call, claimed positions whose slots are not published yet included
+     */
+    public int size() {
+        return Math.max(0, occupiedSlots() - tombstones.get());
+    }
+
+    /**
+     * @return number of slots not available to producers, tombstones included
+     */
+    int occupiedSlots() {
+        while (true) {
+            final var head = head();
+            final var tail = tail();
+            if (head == head()) {
+                return (int) Math.max(0, Math.min(tail - head, capacity()));
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
+
+/**
+ * Padding of the counters of {@link MpmcRingBuffer}: 128 bytes on each side, a 64-byte cache line and the adjacent line
+ * fetched with it by the spatial prefetcher of x86 cores.
+ */
+abstract class LeadingPadding {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+}
+
+abstract class TailField extends LeadingPadding {
+    private static final VarHandle TAIL;
+
+    static {
+        try {
+            TAIL = MethodHandles.lookup().findVarHandle(TailField.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile long tail;
+
+    final long tail() {
+        return tail;
+    }
+
+    final boolean casTail(long expected, long next) {
+        return TAIL.compareAndSet(this, expected, next);
+    }
+}
+
+abstract class TailPadding extends TailField {
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+    long p30, p31, p32, p33, p34, p35, p36, p37;
+}
+
+abstract class HeadField extends TailPadding {
+    private static final VarHandle HEAD;
+
+    static {
+        try {
+            HEAD = MethodHandles.lookup().findVarHandle(HeadField.class, "head", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile long head;
+
+    final long head() {
+        return head;
+    }
+
+    final boolean casHead(long expected, long next) {
+        return HEAD.compareAndSet(this, expected, next);
+    }
+}
+
+abstract class HeadPadding extends HeadField {
+    long p40, p41, p42, p43, p44, p45, p46, p47;
+    long p50, p51, p52, p53, p54, p55, p56, p57;
+}
@@ -0,0 +1,61 @@
+package com.cap.queue;
+
+import java.time.Duration;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How {@link MpmcBlockingQueue} waits between unsuccessful attempts to offer or poll.
+ * <p>
+ * The ring buffer has no waiter list to signal, so every strategy retries on its own schedule and trades CPU for latency:
+ * spinning reacts fastest and burns a core per waiting thread, yielding lets other threads of the core run,
+ * parking frees the core at the cost of up to the maximum park time of extra latency.
+ * Spinning strategies only pay off with fewer waiting threads than cores.
+ */
+@FunctionalInterface
+public interface WaitStrategy {
+
+    /**
+     * @param attempt number of unsuccessful attempts so far, starting at 0
+     */
+    void idle(int attempt);
+
+    /**
+     * Retries immediately with a {@link Thread#onSpinWait()} hint.
+     */
+    static WaitStrategy busySpin() {
+        return attempt -> Thread.onSpinWait();
+    }
+
+    /**
+     * Spins for the first 100 attempts, then calls {@link Thread#yield()}.
+     */
+    static WaitStrategy yielding() {
+        return attempt -> {
+            if (attempt < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        };
+    }
+
+    /**
+     * Spins and yields like {@link #yielding()}, then parks for exponentially growing periods up to {@code maxPark}.
+     */
+    static WaitStrategy parking(Duration maxPark) {
+        if (maxPark.isNegative() || maxPark.isZero()) {
+            throw new IllegalArgumentException("maxPark must be positive");
+        }
+        final var maxParkNanos = maxPark.toNanos();
+        return attempt -> {
+            if (attempt < 100) {
+                Thread.onSpinWait();
+            } else if (attempt < 200) {
+                Thread.yield();
+            } else {
+                final var shift = Math.min(attempt - 200, 20);
+                LockSupport.parkNanos(Math.min(1_000L << shift, maxParkNanos));
+            }
+        };
+    }
+}
@@ -0,0 +1,261 @@
+package com.cap
+
+import com.cap.ConcurrentSuccessfulTaskCollector.TasksCount
+import com.cap.collector.AttemptBudget
+import com.cap.collector.ThroughputBucket
+import com.cap.collector.ThroughputTimeline
+import mu.KotlinLogging
+import java.time.Duration
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Multi-stage variant of [ConcurrentSuccessfulTaskCollector], e.g. create → enrich → persist, with stages running at the same time.
+ *
+ * The source stage executes attempts like the collector does, every following stage transforms results of the previous one.
+ * Each stage has its own workers and takes its input from a bounded queue, so a slow stage blocks the stages before it
+ * (end-to-end backpressure) instead of buffering an unbounded number of results.
+ * A result is successful when it passes the last stage, only those count towards `minNumberOfResults`.
+ * When the target is reached no new attempt is started and queued results are discarded, results already
+ * in a stage are finished, so the number of successful results may exceed the target by the last stage's concurrency.
+ *
+ * ```
+ * ConcurrentPipeline.source(maxConcurrency = 4) { createEntity() }
+ *     .then("enrich", maxConcurrency = 8) { enrich(it) }
+ *     .then("persist", maxConcurrency = 2) { persist(it) }
+ *     .run(minNumberOfResults = 1_000, maxAttempts = 2_000)
+ * ```
+ *
+ * @param T The type of results of the last stage
+ */
+class ConcurrentPipeline<T> private constructor(private val stages: List<Stage>) {
+
+    private class Stage(
+        val name: String,
+        val maxConcurrency: Int,
+        val queueCapacity: Int,
+        val task: (Any) -> Any?,
+    )
+
+    /**
+     * @param tasksCount Results passed to the next stage and failed attempts or transformations of this stage
+     * @param throughputTimeline Number of results finished in every second of the run
+     */
+    data class StageReport(
+        val name: String,
+        val tasksCount: TasksCount,
+        val throughputTimeline: List<ThroughputBucket>,
+    )
+
+    /**
+     * @param tasksCount Successful results of the last stage and failures of all stages
+     */
+    data class PipelineReport(
+        val tasksCount: TasksCount,
+        val stages: List<StageReport>,
+        val elapsed: Duration,
+    )
+
+    /**
+     * Adds a stage transforming every result of the previous stage.
+     *
+     * @param name Name of the stage in [PipelineReport.stages] and its thread names
+     * @param maxConcurrency Number of workers of the stage
+     * @param queueCapacity Number of results of the previous stage waiting for this stage, the previous stage blocks when it is reached
+     * @param transform Transformation returning the result or null on failure
+     */
+    fun <R> then(
+        name: String,
+        maxConcurrency: Int,
+        queueCapacity: Int = maxConcurrency * 4,
+        transform: (T) -> R?,
+    ): ConcurrentPipeline<R> {
+        require(maxConcurrency > 0) { "maxConcurrency must be greater than 0" }
+        require(queueCapacity > 0) { "queueCapacity must be greater than 0" }
+        require(stages.none { it.name == name }) { "stage names must be unique" }
+        @Suppress("UNCHECKED_CAST")
+        return ConcurrentPipeline(stages + Stage(name, maxConcurrency, queueCapacity) { transform(it as T) })
+    }
+
+    /**
+     * Runs the pipeline until `minNumberOfResults` results passed the last stage, the source made `maxAttempts` attempts
+     * or `duration` elapsed, and every started result left the pipeline.
+     *
+     * @param onSuccess Optional callback for each result of the last stage, executed by the last stage's workers
+     * @param minNumberOfResults Minimum number of results of the last stage, unlimited when not given
+     * @param maxAttempts Maximum number of attempts of the source stage, unlimited when not given
+     * @param duration Optional maximum time during which the source starts attempts
+     */
+    fun run(
+        onSuccess: (T) -> Unit = {},
+        minNumberOfResults: Int = Int.MAX_VALUE,
+        maxAttempts: Int = Int.MAX_VALUE,
+        duration: Duration? = null,
+    ): PipelineReport {
+        require(minNumberOfResults > 0) { "minNumberOfResults must be greater than 0" }
+        require(minNumberOfResults == Int.MAX_VALUE || minNumberOfResults <= maxAttempts) {
+            "minNumberOfResults must be less than or equal to maxAttempts"
+        }
+        require(duration == null || !duration.isNegative) { "duration must not be negative" }
+        require(minNumberOfResults < Int.MAX_VALUE || maxAttempts < Int.MAX_VALUE || duration != null) {
+            "at least one of minNumberOfResults, maxAttempts or duration must be given"
+        }
+        @Suppress("UNCHECKED_CAST")
+        return Execution(onSuccess as (Any) -> Unit, minNumberOfResults, maxAttempts, duration).run()
+    }
+
+    private inner class Execution(
+        private val onSuccess: (Any) -> Unit,
+        private val minNumberOfResults: Int,
+        maxAttempts: Int,
+        duration: Duration?,
+    ) {
+        private val startNanos = System.nanoTime()
+        private val sourceBudget = AttemptBudget(
+            minNumberOfResults = Int.MAX_VALUE,
+            maxAttempts = maxAttempts,
+            stopAtNanos = duration?.let { startNanos + it.toNanos() },
+        )
+        private val poolName = "concurrent-pipeline-${pipelineCount.incrementAndGet()}"
+        private val last = stages.size - 1
+
+        /**
+         * Input of stage `i + 1` is `queues[i]`, the source has no input queue.
+         */
+        private val queues = stages.drop(1).map { ArrayBlockingQueue<Any>(it.queueCapacity) }
+        private val successes = List(stages.size) { LongAdder() }
+        private val failures = List(stages.size) { LongAdder() }
+        private val timelines = List(stages.size) { ThroughputTimeline(startNanos) }
+        private val activeWorkers = stages.map { AtomicInteger(it.maxConcurrency) }
+        private val completedResults = AtomicInteger(0)
+        private val error = AtomicReference<Throwable?>(null)
+
+        @Volatile
+        private var stopped = false
+
+        fun run(): PipelineReport {
+            val pools = stages.mapIndexed { index, stage ->
+                val threadCount = AtomicInteger(0)
+                Executors.newFixedThreadPool(stage.maxConcurrency) {
+                    Thread(it, "$poolName-${stage.name}-thread-${threadCount.incrementAndGet()}")
+                }.apply {
+                    repeat(stage.maxConcurrency) { execute { work(index) } }
+                }
+            }
+            pools.forEach { it.shutdown() }
+            try {
+                pools.forEach { it.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS) }
+            } finally {
+                // nothing to do after termination, stops the workers when the caller was interrupted
+                stop()
+                pools.forEach { it.shutdownNow() }
+            }
+            error.get()?.let { throw it }
+            val stageReports = stages.mapIndexed { index, stage ->
+                StageReport(
+                    name = stage.name,
+                    tasksCount = TasksCount(successful = successes[index].sum().toInt(), failed = failures[index].sum().toInt()),
+                    throughputTimeline = timelines[index].snapshot(),
+                )
+            }
+            return PipelineReport(
+                tasksCount = TasksCount(
+                    successful = stageReports[last].tasksCount.successful,
+                    failed = stageReports.sumOf { it.tasksCount.failed },
+                ),
+                stages = stageReports,
+                elapsed = Duration.ofNanos(System.nanoTime() - startNanos),
+            )
+        }
+
+        private fun work(stageIndex: Int) {
+            val stage = stages[stageIndex]
+            try {
+                if (stageIndex == 0) {
+                    while (sourceBudget.tryReserveAttempt()) {
+                        process(stageIndex, SOURCE_INPUT, stage)
+                    }
+                } else {
+                    val input = queues[stageIndex - 1]
+                    while (true) {
+                        val item = input.take()
+                        if (item === END_OF_INPUT) {
+                            break
+                        }
+                        if (!stopped) {
+                            process(stageIndex, item, stage)
+                        }
+                    }
+                }
+            } finally {
+                if (activeWorkers[stageIndex].decrementAndGet() == 0 && stageIndex < last) {
+                    // queued after every result of this stage, one for each worker of the next stage
+                    repeat(stages[stageIndex + 1].maxConcurrency) { queues[stageIndex].put(END_OF_INPUT) }
+                }
+            }
+        }
+
+        private fun process(stageIndex: Int, item: Any, stage: Stage) {
+            val successful = try {
+                val result = stage.task(item)
+                result != null && emit(stageIndex, result)
+            } catch (e: Exception) {
+                logger.debug(e) { "Stage ${stage.name} failed" }
+                false
+            } catch (e: Throwable) {
+                error.compareAndSet(null, e)
+                stop()
+                false
+            }
+            timelines[stageIndex].record(System.nanoTime(), successful)
+            if (successful) {
+                successes[stageIndex].increment()
+            } else {
+                failures[stageIndex].increment()
+            }
+        }
+
+        private fun emit(stageIndex: Int, result: Any): Boolean {
+            if (stageIndex < last) {
+                queues[stageIndex].put(result)
+                return true
+            }
+            onSuccess(result)
+            if (completedResults.incrementAndGet() >= minNumberOfResults) {
+                stop()
+            }
+            return true
+        }
+
+        private fun stop() {
+            stopped = true
+            sourceBudget.stop()
+        }
+    }
+
+    companion object {
+        private val logger = KotlinLogging.logger {}
+        private val pipelineCount = AtomicInteger(0)
+        private val SOURCE_INPUT = Any()
+        private val END_OF_INPUT = Any()
+
+        /**
+         * Starts a pipeline whose first stage executes attempts like [ConcurrentSuccessfulTaskCollector.countSuccessfulResults].
+         *
+         * @param maxConcurrency Number of workers of the source stage
+         * @param taskSupplier A function that supplies the task logic and returns result or null on failure
+         */
+        fun <T> source(
+            maxConcurrency: Int,
+            name: String = "source",
+            taskSupplier: () -> T?,
+        ): ConcurrentPipeline<T> {
+            require(maxConcurrency > 0) { "maxConcurrency must be greater than 0" }
+            return ConcurrentPipeline(listOf(Stage(name, maxConcurrency, queueCapacity = 0) { taskSupplier() }))
+        }
+    }
+}
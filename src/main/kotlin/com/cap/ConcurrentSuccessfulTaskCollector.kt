@@ -1,120 +1,1112 @@
 package com.cap
 
+import com.cap.collector.AttemptBudget
+import com.cap.collector.AttemptWatchdog
+import com.cap.collector.BatchDelivery
+import com.cap.collector.BatchingSink
+import com.cap.collector.Checkpoint
+import com.cap.collector.CheckpointFile
+import com.cap.collector.CircuitBreaker
+import com.cap.collector.CircuitBreakerPolicy
+import com.cap.collector.CollectionOptions
+import com.cap.collector.FailureBackoff
+import com.cap.collector.LatencyHistogram
+import com.cap.collector.LatencySnapshot
+import com.cap.collector.MappedBudgetState
+import com.cap.collector.PaddedBudgetState
+import com.cap.collector.Scenario
+import com.cap.collector.ScenarioMix
+import com.cap.collector.ThroughputBucket
+import com.cap.collector.ThroughputTimeline
 import mu.KotlinLogging
+import java.nio.file.Path
 import java.time.Duration
-import java.util.concurrent.*
-import java.util.concurrent.atomic.AtomicBoolean
+import java.time.Instant
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Semaphore
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
 import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
+import java.util.concurrent.atomic.LongAdder
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+import java.util.function.Supplier
 
 
 /**
  * A thread-safe collector that executes tasks concurrently and collects count of successful and failed results.
  *
  * It continues executing tasks until either the desired number of successful results is achieved
- * or the maximum number of attempts is reached.
+ * or the maximum number of attempts is reached. Optionally a run is also limited by duration or deadline
+ * and preceded by a warmup phase, whose attempts are executed but not counted.
  *
  * Example use cases:
  * - Load test keeping `maxConcurrency` tasks
  * - Dataset generation via API to have desired number of entities, where concurrent tasks make it faster than linear processing
  *
+ * By default every run creates its own thread pool and shuts it down at the end.
+ * With `reuseWorkerPool` the collector owns one pool for its whole lifetime, runs are executed one at a time
+ * on the same threads and the pool is shut down by [close].
+ *
  * @param T The type of results produced by the tasks
  * @param maxConcurrency The maximum number of tasks that can execute concurrently
+ * @param terminationTimeout How long to wait for worker threads to finish when shutting down a pool
+ * @param reuseWorkerPool Keep worker threads alive between runs until [close] is called
  */
 class ConcurrentSuccessfulTaskCollector<T>(
     private val maxConcurrency: Int,
     private val terminationTimeout: Duration = Duration.ofSeconds(10),
-) {
+    reuseWorkerPool: Boolean = false,
+) : AutoCloseable {
     init {
         require(maxConcurrency > 0) { "maxConcurrency must be greater than 0" }
     }
 
+    private val sharedWorkerPool: WorkerPool? = if (reuseWorkerPool) newWorkerPool(maxConcurrency) else null
+    private val runPermit = Semaphore(1)
+
     private companion object {
         private val logger = KotlinLogging.logger {}
         private val poolCount = AtomicInteger(0)
+        private val STOP_POLL_NANOS = Duration.ofMillis(10).toNanos()
     }
 
-    data class TasksCount(val successful: Int, val failed: Int) {
+    /**
+     * @param timedOut Attempts interrupted by `attemptTimeout`, included in [failed]
+     */
+    data class TasksCount(val successful: Int, val failed: Int, val timedOut: Int = 0) {
         fun attempts() = successful + failed
     }
 
+    /**
+     * Progress of a run at the moment of [CollectionRun.snapshot].
+     *
+     * @param inFlight Attempts started and not finished yet, counted directly, so also correct when an attempt of
+     * a batch run counts many results
+     * @param warmingUp True while the warmup phase lasts, counts and rates cover the measurement phase only
+     * @param estimatedTimeToTarget Time to reach `minNumberOfResults` at the average success rate so far,
+     * null when there was no successful result yet. With a shared budget file the remaining number of results
+     * covers all processes, while the rate is of this process only.
+     */
+    data class ProgressSnapshot(
+        val successful: Int,
+        val failed: Int,
+        val inFlight: Int,
+        val warmingUp: Boolean,
+        val elapsed: Duration,
+        val attemptsPerSecond: Double,
+        val estimatedTimeToTarget: Duration?,
+    )
+
+    /**
+     * [TasksCount] extended with latency distributions of attempts and number of attempts finished in every second of the run.
+     * Everything except [warmup] covers the measurement phase only.
+     */
+    data class TasksReport(
+        val tasksCount: TasksCount,
+        val successLatency: LatencySnapshot,
+        val failureLatency: LatencySnapshot,
+        val throughputTimeline: List<ThroughputBucket>,
+        val warmup: TasksCount = TasksCount(successful = 0, failed = 0),
+        val circuitOpenings: Int = 0,
+        val scenarios: Map<String, ScenarioReport> = emptyMap(),
+    )
+
+    /**
+     * Counts and latency of attempts of one [Scenario] of a mix, measurement phase only.
+     */
+    data class ScenarioReport(
+        val tasksCount: TasksCount,
+        val successLatency: LatencySnapshot,
+        val failureLatency: LatencySnapshot,
+    )
+
     /**
      * Executes tasks concurrently until the desired number of successful results is collected
      * or maximum attempts is reached.
      *
      * @param taskSupplier A function that supplies the task logic and returns result or null on failure
      * @param onSuccess Optional callback function to be executed for each successful result
-     * @param minNumberOfResults Minimum number of successful results needed
-     * @param maxAttempts Maximum number of task execution attempts allowed
-     * @return [TasksCount] containing the number of successful and failed attempts
+     * @param minNumberOfResults Minimum number of successful results needed, unlimited when not given
+     * @param maxAttempts Maximum number of task execution attempts allowed, unlimited when not given
+     * @param batchDelivery Optional asynchronous, batched delivery of successful results, see [collectSuccessfulResults]
+     * @param duration Optional maximum duration of the measurement phase, counted after [warmup]
+     * @param deadline Optional moment after which no attempt is started, warmup included
+     * @param warmup Time during which attempts are executed but neither counted nor passed to [onSuccess]
+     * @param sharedBudgetFile Optional file through which collectors in several processes share
+     * [minNumberOfResults] and [maxAttempts], see [MappedBudgetState]
+     * @param checkpoint Optional periodic checkpoint, a run started with the checkpoint of an interrupted run
+     * continues from its counts, which are included in the returned [TasksCount]
+     * @param failureBackoff Optional delay of a worker after its failed attempts (task returned null or threw)
+     * @param circuitBreaker Optional pause of all workers while the recent failure rate is too high
+     * @param attemptTimeout Optional maximum duration of an attempt. A longer attempt is counted as failed and timed out,
+     * its worker thread is interrupted and a new worker takes over its slot right away. A task ignoring the interrupt
+     * keeps its thread busy until it returns, its result is then discarded.
+     * @param beforeAttempt Optional hook called by a worker before it reserves its next attempt, e.g. to wait for
+     * a rate limiter. Its time is not part of attempt latency and a waiting worker has no attempt in flight.
+     * @return [TasksCount] containing the number of successful and failed attempts of this process after warmup
      */
     fun countSuccessfulResults(
         taskSupplier: () -> T?,
         onSuccess: (T) -> Unit = {},
+        minNumberOfResults: Int = Int.MAX_VALUE,
+        maxAttempts: Int = Int.MAX_VALUE,
+        batchDelivery: BatchDelivery<T>? = null,
+        duration: Duration? = null,
+        deadline: Instant? = null,
+        warmup: Duration = Duration.ZERO,
+        sharedBudgetFile: Path? = null,
+        checkpoint: Checkpoint<T>? = null,
+        failureBackoff: FailureBackoff? = null,
+        circuitBreaker: CircuitBreakerPolicy? = null,
+        attemptTimeout: Duration? = null,
+        beforeAttempt: (() -> Unit)? = null,
+    ): TasksCount = collectSuccessfulResults(
+        taskSupplier = taskSupplier,
+        onSuccess = onSuccess,
+        minNumberOfResults = minNumberOfResults,
+        maxAttempts = maxAttempts,
+        batchDelivery = batchDelivery,
+        duration = duration,
+        deadline = deadline,
+        warmup = warmup,
+        sharedBudgetFile = sharedBudgetFile,
+        checkpoint = checkpoint,
+        failureBackoff = failureBackoff,
+        circuitBreaker = circuitBreaker,
+        attemptTimeout = attemptTimeout,
+        beforeAttempt = beforeAttempt,
+    ).tasksCount
+
+    /**
+     * Same as [countSuccessfulResults], additionally measuring latency of every attempt
+     * (separately for successful and failed ones) and throughput in every second of the run.
+     *
+     * Latency of an attempt covers `taskSupplier` only, `onSuccess` is not included.
+     *
+     * When [batchDelivery] is given, successful results are additionally put into a bounded queue
+     * and delivered in batches from a separate thread, so a slow sink (e.g. bulk insert to a database)
+     * does not run on worker threads. When the queue is full, workers wait before starting next attempts.
+     * All queued results are delivered before this method returns.
+     *
+     * Statistics cover the measurement phase only, number of warmup attempts is reported in [TasksReport.warmup].
+     *
+     * @param batchDelivery Optional configuration of batched delivery of successful results
+     * @return [TasksReport] containing [TasksCount], latency distributions and throughput timeline
+     */
+    fun collectSuccessfulResults(
+        taskSupplier: () -> T?,
+        onSuccess: (T) -> Unit = {},
+        minNumberOfResults: Int = Int.MAX_VALUE,
+        maxAttempts: Int = Int.MAX_VALUE,
+        batchDelivery: BatchDelivery<T>? = null,
+        duration: Duration? = null,
+        deadline: Instant? = null,
+        warmup: Duration = Duration.ZERO,
+        sharedBudgetFile: Path? = null,
+        checkpoint: Checkpoint<T>? = null,
+        failureBackoff: FailureBackoff? = null,
+        circuitBreaker: CircuitBreakerPolicy? = null,
+        attemptTimeout: Duration? = null,
+        beforeAttempt: (() -> Unit)? = null,
+    ): TasksReport = startCollecting(
+        taskSupplier = taskSupplier,
+        onSuccess = onSuccess,
+        minNumberOfResults = minNumberOfResults,
+        maxAttempts = maxAttempts,
+        batchDelivery = batchDelivery,
+        duration = duration,
+        deadline = deadline,
+        warmup = warmup,
+        sharedBudgetFile = sharedBudgetFile,
+        checkpoint = checkpoint,
+        failureBackoff = failureBackoff,
+        circuitBreaker = circuitBreaker,
+        attemptTimeout = attemptTimeout,
+        beforeAttempt = beforeAttempt,
+    ).awaitReport()
+
+    /**
+     * Starts the same run as [collectSuccessfulResults] and returns without waiting for it to finish.
+     *
+     * With `reuseWorkerPool` runs are executed one at a time, so this call waits until the previous run has finished.
+     *
+     * @return [CollectionRun] to observe progress, cancel the run and wait for its result
+     */
+    fun startCollecting(
+        taskSupplier: () -> T?,
+        onSuccess: (T) -> Unit = {},
+        minNumberOfResults: Int = Int.MAX_VALUE,
+        maxAttempts: Int = Int.MAX_VALUE,
+        batchDelivery: BatchDelivery<T>? = null,
+        duration: Duration? = null,
+        deadline: Instant? = null,
+        warmup: Duration = Duration.ZERO,
+        sharedBudgetFile: Path? = null,
+        checkpoint: Checkpoint<T>? = null,
+        failureBackoff: FailureBackoff? = null,
+        circuitBreaker: CircuitBreakerPolicy? = null,
+        attemptTimeout: Duration? = null,
+        beforeAttempt: (() -> Unit)? = null,
+    ): CollectionRun {
+        require(minNumberOfResults == Int.MAX_VALUE || minNumberOfResults <= maxAttempts) {
+            "minNumberOfResults must be less than or equal to maxAttempts"
+        }
+        return start(
+            minNumberOfResults = minNumberOfResults,
+            maxAttempts = maxAttempts,
+            batchDelivery = batchDelivery,
+            duration = duration,
+            deadline = deadline,
+            warmup = warmup,
+            sharedBudgetFile = sharedBudgetFile,
+            checkpoint = checkpoint,
+            failureBackoff = failureBackoff,
+            circuitBreaker = circuitBreaker,
+            attemptTimeout = attemptTimeout,
+            beforeAttempt = beforeAttempt,
+        ) { work(taskSupplier, onSuccess) }
+    }
+
+    /**
+     * [countSuccessfulResults] for Java callers.
+     */
+    fun countSuccessfulResults(taskSupplier: Supplier<T?>, options: CollectionOptions<T>): TasksCount =
+        collectSuccessfulResults(taskSupplier, options).tasksCount
+
+    /**
+     * [collectSuccessfulResults] for Java callers.
+     */
+    fun collectSuccessfulResults(taskSupplier: Supplier<T?>, options: CollectionOptions<T>): TasksReport =
+        startCollecting(taskSupplier, options).awaitReport()
+
+    /**
+     * [startCollecting] for Java callers.
+     */
+    fun startCollecting(taskSupplier: Supplier<T?>, options: CollectionOptions<T>): CollectionRun =
+        startCollecting(
+            taskSupplier = taskSupplier::get,
+            onSuccess = options.onSuccess,
+            minNumberOfResults = options.minNumberOfResults,
+            maxAttempts = options.maxAttempts,
+            batchDelivery = options.batchDelivery,
+            duration = options.duration,
+            deadline = options.deadline,
+            warmup = options.warmup,
+            sharedBudgetFile = options.sharedBudgetFile,
+            checkpoint = options.checkpoint,
+            failureBackoff = options.failureBackoff,
+            circuitBreaker = options.circuitBreaker,
+            attemptTimeout = options.attemptTimeout,
+            beforeAttempt = options.beforeAttempt,
+        )
+
+    /**
+     * Same as [collectSuccessfulResults] for tasks creating many results at once, e.g. an API generating 100 entities per call.
+     *
+     * [minNumberOfResults] counts individual results, [maxAttempts] counts calls of `batchSupplier`.
+     * A batch that would go past [minNumberOfResults] is trimmed, results beyond the target are neither counted
+     * nor passed to `onSuccess`, so exactly [minNumberOfResults] results are collected when the target is reached.
+     * An empty list, null or an exception is a failed attempt. A result whose `onSuccess` throws is not counted.
+     *
+     * [TasksCount.successful] is the number of results and [TasksCount.failed] the number of failed attempts,
+     * latency and throughput timeline are measured per attempt.
+     *
+     * @param batchSupplier A function that supplies the task logic and returns results or null on failure
+     * @return [TasksReport] as in [collectSuccessfulResults]
+     */
+    fun collectSuccessfulResultsInBatches(
+        batchSupplier: () -> List<T>?,
+        onSuccess: (T) -> Unit = {},
+        minNumberOfResults: Int = Int.MAX_VALUE,
+        maxAttempts: Int = Int.MAX_VALUE,
+        batchDelivery: BatchDelivery<T>? = null,
+        duration: Duration? = null,
+        deadline: Instant? = null,
+        warmup: Duration = Duration.ZERO,
+        sharedBudgetFile: Path? = null,
+        checkpoint: Checkpoint<T>? = null,
+        failureBackoff: FailureBackoff? = null,
+        circuitBreaker: CircuitBreakerPolicy? = null,
+        attemptTimeout: Duration? = null,
+    ): TasksReport = startCollectingInBatches(
+        batchSupplier = batchSupplier,
+        onSuccess = onSuccess,
+        minNumberOfResults = minNumberOfResults,
+        maxAttempts = maxAttempts,
+        batchDelivery = batchDelivery,
+        duration = duration,
+        deadline = deadline,
+        warmup = warmup,
+        sharedBudgetFile = sharedBudgetFile,
+        checkpoint = checkpoint,
+        failureBackoff = failureBackoff,
+        circuitBreaker = circuitBreaker,
+        attemptTimeout = attemptTimeout,
+    ).awaitReport()
+
+    /**
+     * Starts the same run as [collectSuccessfulResultsInBatches] and returns without waiting for it to finish.
+     *
+     * @return [CollectionRun] to observe progress, cancel the run and wait for its result
+     */
+    fun startCollectingInBatches(
+        batchSupplier: () -> List<T>?,
+        onSuccess: (T) -> Unit = {},
+        minNumberOfResults: Int = Int.MAX_VALUE,
+        maxAttempts: Int = Int.MAX_VALUE,
+        batchDelivery: BatchDelivery<T>? = null,
+        duration: Duration? = null,
+        deadline: Instant? = null,
+        warmup: Duration = Duration.ZERO,
+        sharedBudgetFile: Path? = null,
+        checkpoint: Checkpoint<T>? = null,
+        failureBackoff: FailureBackoff? = null,
+        circuitBreaker: CircuitBreakerPolicy? = null,
+        attemptTimeout: Duration? = null,
+    ): CollectionRun = start(
+        minNumberOfResults = minNumberOfResults,
+        maxAttempts = maxAttempts,
+        batchDelivery = batchDelivery,
+        duration = duration,
+        deadline = deadline,
+        warmup = warmup,
+        sharedBudgetFile = sharedBudgetFile,
+        checkpoint = checkpoint,
+        failureBackoff = failureBackoff,
+        circuitBreaker = circuitBreaker,
+        attemptTimeout = attemptTimeout,
+    ) { workInBatches(batchSupplier, onSuccess) }
+
+    /**
+     * Same as [collectSuccessfulResults] with a mix of tasks, e.g. 70% reads, 25% writes and 5% searches.
+     *
+     * Every attempt executes one of [scenarios] chosen at random in proportion to their weights.
+     * All scenarios share the worker pool and [minNumberOfResults] and [maxAttempts],
+     * [TasksReport.scenarios] reports counts and latency of each of them by name.
+     *
+     * @param scenarios Named, weighted task suppliers
+     * @return [TasksReport] of the whole mix including per-scenario reports
+     */
+    fun collectScenarioMix(
+        scenarios: List<Scenario<T>>,
+        onSuccess: (T) -> Unit = {},
+        minNumberOfResults: Int = Int.MAX_VALUE,
+        maxAttempts: Int = Int.MAX_VALUE,
+        batchDelivery: BatchDelivery<T>? = null,
+        duration: Duration? = null,
+        deadline: Instant? = null,
+        warmup: Duration = Duration.ZERO,
+        sharedBudgetFile: Path? = null,
+        checkpoint: Checkpoint<T>? = null,
+        failureBackoff: FailureBackoff? = null,
+        circuitBreaker: CircuitBreakerPolicy? = null,
+        attemptTimeout: Duration? = null,
+    ): TasksReport = startCollectingScenarioMix(
+        scenarios = scenarios,
+        onSuccess = onSuccess,
+        minNumberOfResults = minNumberOfResults,
+        maxAttempts = maxAttempts,
+        batchDelivery = batchDelivery,
+        duration = duration,
+        deadline = deadline,
+        warmup = warmup,
+        sharedBudgetFile = sharedBudgetFile,
+        checkpoint = checkpoint,
+        failureBackoff = failureBackoff,
+        circuitBreaker = circuitBreaker,
+        attemptTimeout = attemptTimeout,
+    ).awaitReport()
+
+    /**
+     * Starts the same run as [collectScenarioMix] and returns without waiting for it to finish.
+     *
+     * @return [CollectionRun] to observe progress, cancel the run and wait for its result
+     */
+    fun startCollectingScenarioMix(
+        scenarios: List<Scenario<T>>,
+        onSuccess: (T) -> Unit = {},
+        minNumberOfResults: Int = Int.MAX_VALUE,
+        maxAttempts: Int = Int.MAX_VALUE,
+        batchDelivery: BatchDelivery<T>? = null,
+        duration: Duration? = null,
+        deadline: Instant? = null,
+        warmup: Duration = Duration.ZERO,
+        sharedBudgetFile: Path? = null,
+        checkpoint: Checkpoint<T>? = null,
+        failureBackoff: FailureBackoff? = null,
+        circuitBreaker: CircuitBreakerPolicy? = null,
+        attemptTimeout: Duration? = null,
+    ): CollectionRun {
+        require(minNumberOfResults == Int.MAX_VALUE || minNumberOfResults <= maxAttempts) {
+            "minNumberOfResults must be less than or equal to maxAttempts"
+        }
+        val scenarioMix = ScenarioMix(scenarios)
+        return start(
+            minNumberOfResults = minNumberOfResults,
+            maxAttempts = maxAttempts,
+            batchDelivery = batchDelivery,
+            duration = duration,
+            deadline = deadline,
+            warmup = warmup,
+            sharedBudgetFile = sharedBudgetFile,
+            checkpoint = checkpoint,
+            failureBackoff = failureBackoff,
+            circuitBreaker = circuitBreaker,
+            attemptTimeout = attemptTimeout,
+            scenarioMix = scenarioMix,
+        ) { workScenarioMix(scenarioMix, onSuccess) }
+    }
+
+    /**
+     * Same as [collectSuccessfulResults] for tasks that are already asynchronous, e.g. calls of non-blocking HTTP or database clients.
+     *
+     * Up to `maxConcurrency` futures are kept in flight using only [threads] threads: whenever a future completes,
+     * its result is handled and the next attempt is started from the completion callback, on one of these threads.
+     * Attempts are reserved from the same budget as in the blocking mode, so [minNumberOfResults], [maxAttempts],
+     * [duration], [deadline] and [CollectionRun.cancel] stop the run in the same way.
+     * `asyncTaskSupplier` and `onSuccess` must not block, they run on the few callback threads.
+     *
+     * Warmup, failure backoff and circuit breaker are not supported in this mode.
+     *
+     * @param asyncTaskSupplier A function that starts the task and returns its future result, null or an exceptional completion on failure
+     * @param attemptTimeout Optional maximum duration of an attempt, the future is then completed with a
+     * [java.util.concurrent.TimeoutException] by [CompletableFuture.orTimeout] and counted as timed out
+     * @param threads Number of threads starting attempts and handling their results
+     * @return [TasksReport] as in [collectSuccessfulResults]
+     */
+    fun collectSuccessfulResultsAsync(
+        asyncTaskSupplier: () -> CompletableFuture<T?>,
+        onSuccess: (T) -> Unit = {},
+        minNumberOfResults: Int = Int.MAX_VALUE,
+        maxAttempts: Int = Int.MAX_VALUE,
+        batchDelivery: BatchDelivery<T>? = null,
+        duration: Duration? = null,
+        deadline: Instant? = null,
+        sharedBudgetFile: Path? = null,
+        checkpoint: Checkpoint<T>? = null,
+        attemptTimeout: Duration? = null,
+        threads: Int = Runtime.getRuntime().availableProcessors(),
+    ): TasksReport = startCollectingAsync(
+        asyncTaskSupplier = asyncTaskSupplier,
+        onSuccess = onSuccess,
+        minNumberOfResults = minNumberOfResults,
+        maxAttempts = maxAttempts,
+        batchDelivery = batchDelivery,
+        duration = duration,
+        deadline = deadline,
+        sharedBudgetFile = sharedBudgetFile,
+        checkpoint = checkpoint,
+        attemptTimeout = attemptTimeout,
+        threads = threads,
+    ).awaitReport()
+
+    /**
+     * Starts the same run as [collectSuccessfulResultsAsync] and returns without waiting for it to finish.
+     * Async runs always use their own threads, also with `reuseWorkerPool`.
+     *
+     * @return [CollectionRun] to observe progress, cancel the run and wait for its result
+     */
+    fun startCollectingAsync(
+        asyncTaskSupplier: () -> CompletableFuture<T?>,
+        onSuccess: (T) -> Unit = {},
+        minNumberOfResults: Int = Int.MAX_VALUE,
+        maxAttempts: Int = Int.MAX_VALUE,
+        batchDelivery: BatchDelivery<T>? = null,
+        duration: Duration? = null,
+        deadline: Instant? = null,
+        sharedBudgetFile: Path? = null,
+        checkpoint: Checkpoint<T>? = null,
+        attemptTimeout: Duration? = null,
+        threads: Int = Runtime.getRuntime().availableProcessors(),
+    ): CollectionRun {
+        require(minNumberOfResults == Int.MAX_VALUE || minNumberOfResults <= maxAttempts) {
+            "minNumberOfResults must be less than or equal to maxAttempts"
+        }
+        require(threads > 0) { "threads must be greater than 0" }
+        return start(
+            minNumberOfResults = minNumberOfResults,
+            maxAttempts = maxAttempts,
+            batchDelivery = batchDelivery,
+            duration = duration,
+            deadline = deadline,
+            warmup = Duration.ZERO,
+            sharedBudgetFile = sharedBudgetFile,
+            checkpoint = checkpoint,
+            failureBackoff = null,
+            circuitBreaker = null,
+            attemptTimeout = attemptTimeout,
+            asyncThreads = threads,
+        ) { workAsync(asyncTaskSupplier, onSuccess, attemptTimeout) }
+    }
+
+    /**
+     * @param asyncThreads Number of threads of an async run, which never uses the shared worker pool
+     */
+    private fun start(
         minNumberOfResults: Int,
         maxAttempts: Int,
-    ): TasksCount {
+        batchDelivery: BatchDelivery<T>?,
+        duration: Duration?,
+        deadline: Instant?,
+        warmup: Duration,
+        sharedBudgetFile: Path?,
+        checkpoint: Checkpoint<T>?,
+        failureBackoff: FailureBackoff?,
+        circuitBreaker: CircuitBreakerPolicy?,
+        attemptTimeout: Duration?,
+        scenarioMix: ScenarioMix<T>? = null,
+        asyncThreads: Int? = null,
+        beforeAttempt: (() -> Unit)? = null,
+        worker: CollectionRun.() -> Unit,
+    ): CollectionRun {
         require(maxAttempts > 0) { "maxAttempts must be greater than 0" }
         require(minNumberOfResults > 0) { "minNumberOfResults must be greater than 0" }
-        require(minNumberOfResults <= maxAttempts) { "minNumberOfResults must be less than or equal to maxAttempts" }
+        require(duration == null || !duration.isNegative) { "duration must not be negative" }
+        require(!warmup.isNegative) { "warmup must not be negative" }
+        require(attemptTimeout == null || (!attemptTimeout.isNegative && !attemptTimeout.isZero)) {
+            "attemptTimeout must be positive"
+        }
+        require(checkpoint == null || sharedBudgetFile == null) {
+            "checkpoint cannot be combined with sharedBudgetFile, which already keeps progress of all processes"
+        }
+        require(minNumberOfResults < Int.MAX_VALUE || maxAttempts < Int.MAX_VALUE || duration != null || deadline != null) {
+            "at least one of minNumberOfResults, maxAttempts, duration or deadline must be given"
+        }
 
-        val successfulResults = AtomicInteger(0)
-        val attemptCount = AtomicInteger(0)
-        val shouldStop = AtomicBoolean(false)
+        // opened before the run permit is taken, a foreign or unreadable file must not strand the permit,
+        // at most one of them is given
+        val sharedBudgetState = sharedBudgetFile?.let { MappedBudgetState(it) }
+        val checkpointFile = checkpoint?.let { CheckpointFile(it) }
+        val permitTaken = sharedWorkerPool != null && asyncThreads == null
+        if (permitTaken) {
+            try {
+                runPermit.acquire()
+            } catch (e: Throwable) {
+                sharedBudgetState?.close()
+                checkpointFile?.close()
+                throw e
+            }
+            if (sharedWorkerPool!!.isShutdown) {
+                runPermit.release()
+                sharedBudgetState?.close()
+                checkpointFile?.close()
+                throw IllegalStateException("Collector is already closed")
+            }
+        }
+        var executor: WorkerPool? = null
+        val run = try {
+            executor = if (asyncThreads != null) newWorkerPool(asyncThreads) else sharedWorkerPool ?: newWorkerPool(maxConcurrency)
+            val measurementStartNanos = System.nanoTime() + warmup.toNanos()
+            val budget = AttemptBudget(
+                minNumberOfResults = minNumberOfResults,
+                maxAttempts = maxAttempts,
+                stopAtNanos = stopAtNanos(measurementStartNanos, duration, deadline),
+                state = sharedBudgetState ?: PaddedBudgetState(),
+            )
+            checkpointFile?.recorded?.let { budget.resume(successful = it.successful, failed = it.failed) }
+            CollectionRun(
+                budget = budget,
+                sharedBudgetState = sharedBudgetState,
+                checkpointFile = checkpointFile,
+                checkpointInterval = checkpoint?.interval,
+                failureBackoff = failureBackoff,
+                circuitBreaker = circuitBreaker?.let { CircuitBreaker(it) },
+                scenarioMix = scenarioMix,
+                // async attempts cannot be interrupted, they time out through their futures
+                attemptTimeout = attemptTimeout.takeIf { asyncThreads == null },
+                beforeAttempt = beforeAttempt,
+                worker = worker,
+                measurementStartNanos = measurementStartNanos,
+                minNumberOfResults = minNumberOfResults,
+                executor = executor,
+                sink = batchDelivery?.let { BatchingSink(it, "${executor.name}-sink") },
+            )
+        } catch (e: Throwable) {
+            // until the run is handed over, nobody else would release the permit or close the file
+            sharedBudgetState?.close()
+            checkpointFile?.close()
+            if (executor != null && executor !== sharedWorkerPool) {
+                executor.shutdown()
+            }
+            if (permitTaken) {
+                runPermit.release()
+            }
+            throw e
+        }
+        run.startWorkers()
+        return run
+    }
 
-        val poolName = "concurrent-successful-task-collector-pool-${poolCount.incrementAndGet()}"
-        var threadCount = 1
-        val executor = Executors.newFixedThreadPool(maxConcurrency) {
-            Thread(it).apply { name = "$poolName-thread-${threadCount++}" }
+    /**
+     * Handle of a started run. Reading progress does not block workers.
+     */
+    inner class CollectionRun internal constructor(
+        private val budget: AttemptBudget,
+        private val sharedBudgetState: MappedBudgetState?,
+        private val checkpointFile: CheckpointFile<T>?,
+        checkpointInterval: Duration?,
+        private val failureBackoff: FailureBackoff?,
+        private val circuitBreaker: CircuitBreaker?,
+        private val scenarioMix: ScenarioMix<T>?,
+        attemptTimeout: Duration?,
+        private val beforeAttempt: (() -> Unit)?,
+        private val worker: CollectionRun.() -> Unit,
+        private val measurementStartNanos: Long,
+        private val minNumberOfResults: Int,
+        private val executor: WorkerPool,
+        private val sink: BatchingSink<T>?,
+    ) {
+        private val successLatency = LatencyHistogram()
+        private val failureLatency = LatencyHistogram()
+        private val throughputTimeline = ThroughputTimeline(measurementStartNanos)
+        private val warmupSuccesses = LongAdder()
+        private val warmupFailures = LongAdder()
+        private val timedOutAttempts = LongAdder()
+        private val attemptsInFlight = LongAdder()
+        private val activeWorkers = AtomicInteger(maxConcurrency)
+        private val workerError = AtomicReference<Throwable?>(null)
+        private val stopLock = ReentrantLock()
+        private val stopSignal = stopLock.newCondition()
+        private val result = CompletableFuture<TasksReport>()
+        private val checkpointScheduler = checkpointFile?.let {
+            Executors.newSingleThreadScheduledExecutor { task ->
+                Thread(task, "${executor.name}-checkpoint").apply { isDaemon = true }
+            }.apply {
+                val intervalMillis = checkpointInterval!!.toMillis()
+                scheduleWithFixedDelay(::writeCheckpoint, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS)
+            }
         }
-        val completionService = ExecutorCompletionService<T>(executor)
-        val futures = mutableListOf<Future<T>>()
-        val finishLatch = CountDownLatch(maxConcurrency)
 
-        val semaphore = Semaphore(maxConcurrency)
-        try {
+        private val watchdog = attemptTimeout?.let { AttemptWatchdog(it, "${executor.name}-watchdog", ::onAttemptTimeout) }
+        private val replacementPool = attemptTimeout?.let {
+            val threadCount = AtomicInteger(0)
+            Executors.newCachedThreadPool { task ->
+                Thread(task, "${executor.name}-replacement-${threadCount.incrementAndGet()}")
+            }
+        }
+
+        fun snapshot(): ProgressSnapshot {
+            val sinceMeasurementStart = System.nanoTime() - measurementStartNanos
+            val elapsed = Duration.ofNanos(sinceMeasurementStart.coerceAtLeast(0))
+            val successful = budget.successful()
+            val failed = budget.failed()
+            // counts resumed from a checkpoint were not made in the elapsed time of this run
+            val resumed = checkpointFile?.recorded
+            val runSuccessful = successful - (resumed?.successful ?: 0)
+            val runAttempts = budget.attempts() - (resumed?.let { it.successful + it.failed } ?: 0)
+            val elapsedSeconds = elapsed.toNanos() / 1_000_000_000.0
+            val successesPerSecond = if (elapsedSeconds > 0) runSuccessful / elapsedSeconds else 0.0
+            val remaining = minNumberOfResults - budget.totalSuccessful()
+            return ProgressSnapshot(
+                successful = successful,
+                failed = failed,
+                inFlight = attemptsInFlight.sum().toInt().coerceAtLeast(0),
+                warmingUp = sinceMeasurementStart < 0,
+                elapsed = elapsed,
+                attemptsPerSecond = if (elapsedSeconds > 0) runAttempts / elapsedSeconds else 0.0,
+                estimatedTimeToTarget = when {
+                    remaining <= 0 -> Duration.ZERO
+                    successesPerSecond > 0 -> Duration.ofNanos((remaining / successesPerSecond * 1_000_000_000).toLong())
+                    else -> null
+                },
+            )
+        }
+
+        /**
+         * Stops starting new attempts, attempts in flight are finished and counted.
+         */
+        fun cancel() {
+            budget.stop()
+            signalStop()
+        }
+
+        fun isDone(): Boolean = result.isDone
+
+        /**
+         * Waits for the run to finish.
+         */
+        fun await(): TasksCount = awaitReport().tasksCount
+
+        fun awaitReport(): TasksReport = result.get()
+
+        internal fun startWorkers() {
             repeat(maxConcurrency) {
-                futures += completionService.submit {
-                    while (successfulResults.get() < minNumberOfResults && attemptCount.get() < maxAttempts) {
-                        if (!shouldStop.get()) {
-                            try {
-                                semaphore.acquire()
-                                attemptCount.incrementAndGet()
-                                val taskResult = taskSupplier()
-                                if (taskResult != null) {
-                                    onSuccess(taskResult)
-                                    successfulResults.incrementAndGet()
-                                }
-                            } catch (e: Exception) {
-                                logger.debug(e) { "Executing task failed" }
-                            } finally {
-                                semaphore.release()
-                            }
-                        }
+                executor.execute { worker() }
+            }
+        }
+
+        internal fun work(taskSupplier: () -> T?, onSuccess: (T) -> Unit): Unit =
+            runAttempts(taskSupplier) { taskResult -> accept(taskResult, onSuccess) }
+
+        internal fun workScenarioMix(scenarioMix: ScenarioMix<T>, onSuccess: (T) -> Unit): Unit =
+            runAttempts(
+                supplier = {
+                    val scenario = scenarioMix.pick(ThreadLocalRandom.current().nextDouble())
+                    val start = System.nanoTime()
+                    val taskResult = execute(scenarioMix.scenarios[scenario].taskSupplier)
+                    ScenarioAttempt(scenario, taskResult, System.nanoTime() - start)
+                },
+                succeeded = { it.taskResult != null },
+                accept = { attempt ->
+                    val successful = attempt.taskResult != null && accept(attempt.taskResult, onSuccess)
+                    scenarioMix.record(attempt.scenario, successful, attempt.latencyNanos)
+                    successful
+                },
+            )
+
+        internal fun workInBatches(batchSupplier: () -> List<T>?, onSuccess: (T) -> Unit): Unit =
+            runAttempts(batchSupplier) { batch ->
+                if (batch.isEmpty()) {
+                    return@runAttempts false
+                }
+                val claimed = budget.claimResults(batch.size)
+                var unhandled = 0
+                for (i in 0 until claimed) {
+                    if (handleSuccess(batch[i], onSuccess)) {
+                        checkpointFile?.recordKey(batch[i])
+                        sink?.put(batch[i])
+                    } else {
+                        unhandled++
+                    }
+                }
+                if (unhandled > 0) {
+                    budget.releaseResults(unhandled)
+                }
+                // a batch trimmed to nothing because other workers reached the target is not a failure
+                claimed == 0 || unhandled < claimed
+            }
+
+        private fun accept(taskResult: T, onSuccess: (T) -> Unit): Boolean {
+            if (!handleSuccess(taskResult, onSuccess)) {
+                return false
+            }
+            checkpointFile?.recordKey(taskResult)
+            budget.recordSuccess()
+            // handed over once counted, a sink that stopped working fails the run rather than this attempt
+            sink?.put(taskResult)
+            return true
+        }
+
+        /**
+         * @param succeeded Tells whether a non-null result of a warmup attempt is a success
+         * @param accept Handles a non-null result of an attempt and records its successes in the budget,
+         * returns false when the attempt is to be counted as failed
+         */
+        private fun <R : Any> runAttempts(
+            supplier: () -> R?,
+            succeeded: (R) -> Boolean = { true },
+            accept: (R) -> Boolean,
+        ) {
+            val watched = watchdog?.register()
+            var replaced = false
+            try {
+                val pacing = Pacing()
+                while (System.nanoTime() - measurementStartNanos < 0 && !budget.isExhausted()) {
+                    beforeAttempt?.invoke()
+                    val permit = pacing.beforeAttempt()
+                    watched?.attemptStarted(permit, measured = false)
+                    val taskResult = execute(supplier)
+                    if (watched != null && !watched.attemptFinished()) {
+                        replaced = true
+                        return
                     }
-                    shouldStop.set(true)
-                    logger.info { "Latch: ${finishLatch.count}" }
-                    finishLatch.countDown()
-                    null
+                    val successful = taskResult?.let(succeeded) ?: false
+                    if (successful) {
+                        warmupSuccesses.increment()
+                    } else {
+                        warmupFailures.increment()
+                    }
+                    pacing.afterAttempt(successful, permit)
+                }
+                while (!budget.isExhausted()) {
+                    // outside of the measured attempt and before its reservation
+                    beforeAttempt?.invoke()
+                    val permit = pacing.beforeAttempt()
+                    if (!budget.tryReserveAttempt()) {
+                        break
+                    }
+                    watched?.attemptStarted(permit, measured = true)
+                    attemptsInFlight.increment()
+                    val attemptStart = System.nanoTime()
+                    val taskResult = execute(supplier)
+                    val attemptEnd = System.nanoTime()
+                    if (watched != null && !watched.attemptFinished()) {
+                        replaced = true
+                        return
+                    }
+                    val successful = taskResult != null && accept(taskResult)
+                    pacing.afterAttempt(successful, permit)
+                    recordOutcome(attemptStart, attemptEnd, successful)
+                }
+                // wakes up workers backing off, they would not start another attempt
+                signalStop()
+            } catch (e: Throwable) {
+                budget.stop()
+                workerError.compareAndSet(null, e)
+            } finally {
+                watched?.unregister()
+                // a timed out worker's slot was already handed over to its replacement
+                if (!replaced) {
+                    workerFinished()
                 }
             }
-            finishLatch.await()
-            futures.forEach { it.get(terminationTimeout.toMillis(), TimeUnit.MILLISECONDS) }
+        }
 
-        } finally {
-            executor.shutdown()
+        /**
+         * Keeps one attempt in flight at a time, every next attempt is started from the completion of the previous one.
+         */
+        internal fun workAsync(asyncTaskSupplier: () -> CompletableFuture<T?>, onSuccess: (T) -> Unit, attemptTimeout: Duration?) {
             try {
-                if (!executor.awaitTermination(terminationTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
-                    executor.shutdownNow()
+                if (!budget.tryReserveAttempt()) {
+                    workerFinished()
+                    return
+                }
+                attemptsInFlight.increment()
+                val attemptStart = System.nanoTime()
+                val future = try {
+                    asyncTaskSupplier()
+                } catch (e: Exception) {
+                    CompletableFuture.failedFuture(e)
                 }
-            } catch (e: InterruptedException) {
+                val timedFuture = attemptTimeout?.let { future.orTimeout(it.toNanos(), TimeUnit.NANOSECONDS) } ?: future
+                // always continue on the executor, so futures completed synchronously do not deepen the stack
+                timedFuture.whenCompleteAsync({ taskResult, error ->
+                    val attemptEnd = System.nanoTime()
+                    try {
+                        val timedOut = error != null && (error is TimeoutException || error.cause is TimeoutException)
+                        if (timedOut) {
+                            timedOutAttempts.increment()
+                        } else if (error != null) {
+                            logger.debug(error) { "Executing task failed" }
+                        }
+                        val successful = taskResult != null && accept(taskResult, onSuccess)
+                        recordOutcome(attemptStart, attemptEnd, successful)
+                    } catch (e: Throwable) {
+                        budget.stop()
+                        workerError.compareAndSet(null, e)
+                        workerFinished()
+                        return@whenCompleteAsync
+                    }
+                    workAsync(asyncTaskSupplier, onSuccess, attemptTimeout)
+                }, executor)
+            } catch (e: Throwable) {
+                budget.stop()
+                workerError.compareAndSet(null, e)
+                workerFinished()
+            }
+        }
+
+        private fun recordOutcome(attemptStartNanos: Long, attemptEndNanos: Long, successful: Boolean) {
+            attemptsInFlight.decrement()
+            throughputTimeline.record(attemptEndNanos, successful)
+            if (successful) {
+                successLatency.record(attemptEndNanos - attemptStartNanos)
+            } else {
+                failureLatency.record(attemptEndNanos - attemptStartNanos)
+                budget.recordFailure()
+            }
+        }
+
+        private fun workerFinished() {
+            if (activeWorkers.decrementAndGet() == 0) {
+                finish()
+            }
+        }
+
+        /**
+         * Called from the watchdog thread, the timed out worker no longer touches the run.
+         */
+        private fun onAttemptTimeout(timedOut: AttemptWatchdog.WatchedWorker) {
+            val now = System.nanoTime()
+            timedOut.permit?.let { circuitBreaker?.record(successful = false, permit = it) }
+            if (timedOut.measured) {
+                attemptsInFlight.decrement()
+                throughputTimeline.record(now, successful = false)
+                failureLatency.record(now - timedOut.attemptStartNanos)
+                timedOutAttempts.increment()
+                budget.recordFailure()
+            } else {
+                warmupFailures.increment()
+            }
+            logger.debug { "Attempt timed out after ${Duration.ofNanos(now - timedOut.attemptStartNanos)}, starting a replacement worker" }
+            replacementPool!!.execute { worker() }
+        }
+
+        /**
+         * Per-worker [FailureBackoff] state and access to the run's [CircuitBreaker].
+         */
+        private inner class Pacing {
+            private var consecutiveFailures = 0
+
+            /**
+             * @return circuit breaker permission of the next attempt, null without a circuit breaker or when the run is over
+             */
+            fun beforeAttempt(): CircuitBreaker.Permit? = circuitBreaker?.awaitPermission(budget::isExhausted)
+
+            fun afterAttempt(successful: Boolean, permit: CircuitBreaker.Permit?) {
+                permit?.let { circuitBreaker?.record(successful, it) }
+                if (successful) {
+                    consecutiveFailures = 0
+                } else if (failureBackoff != null) {
+                    consecutiveFailures++
+                    backOff(failureBackoff.delayNanos(consecutiveFailures, ThreadLocalRandom.current().nextDouble()))
+                }
+            }
+
+            /**
+             * Waits for [delayNanos] unless the run is over, woken up by [signalStop]. Exhaustion by time or by workers
+             * of other processes is not signalled, it is checked at least every [STOP_POLL_NANOS].
+             */
+            private fun backOff(delayNanos: Long) {
+                val end = System.nanoTime() + delayNanos
+                stopLock.withLock {
+                    while (!budget.isExhausted()) {
+                        val remaining = end - System.nanoTime()
+                        if (remaining <= 0) {
+                            return
+                        }
+                        stopSignal.awaitNanos(minOf(remaining, STOP_POLL_NANOS))
+                    }
+                }
+            }
+        }
+
+        private fun signalStop() {
+            stopLock.withLock { stopSignal.signalAll() }
+        }
+
+        private fun writeCheckpoint() {
+            try {
+                checkpointFile?.flush(successful = budget.successful(), failed = budget.failed())
+            } catch (e: Exception) {
+                logger.warn(e) { "Writing checkpoint failed" }
+            }
+        }
+
+        private fun scenarioReports(): Map<String, ScenarioReport> {
+            val mix = scenarioMix ?: return emptyMap()
+            return mix.scenarios.withIndex().associate { (index, scenario) ->
+                scenario.name to ScenarioReport(
+                    tasksCount = TasksCount(successful = mix.successful(index), failed = mix.failed(index)),
+                    successLatency = mix.successLatency(index),
+                    failureLatency = mix.failureLatency(index),
+                )
+            }
+        }
+
+        private fun <R : Any> execute(supplier: () -> R?): R? =
+            try {
+                supplier()
+            } catch (e: Exception) {
+                logger.debug(e) { "Executing task failed" }
+                null
+            }
+
+        /**
+         * Called by the last worker of the run, no worker of this run executes tasks anymore.
+         */
+        private fun finish() {
+            try {
+                sink?.close()
+                watchdog?.close()
+                replacementPool?.shutdown()
+                sharedBudgetState?.close()
+                checkpointScheduler?.let { shutdown(it) }
+                checkpointFile?.use { it.flush(successful = budget.successful(), failed = budget.failed()) }
+            } catch (e: Throwable) {
+                workerError.compareAndSet(null, e)
+            }
+            if (executor === sharedWorkerPool) {
+                runPermit.release()
+            } else {
+                executor.shutdown()
+            }
+            val error = workerError.get()
+            if (error != null) {
+                result.completeExceptionally(error)
+            } else {
+                result.complete(
+                    TasksReport(
+                        tasksCount = TasksCount(
+                            successful = budget.successful(),
+                            failed = budget.failed(),
+                            timedOut = timedOutAttempts.sum().toInt(),
+                        ),
+                        successLatency = successLatency.snapshot(),
+                        failureLatency = failureLatency.snapshot(),
+                        throughputTimeline = throughputTimeline.snapshot(),
+                        warmup = TasksCount(
+                            successful = warmupSuccesses.sum().toInt(),
+                            failed = warmupFailures.sum().toInt(),
+                        ),
+                        circuitOpenings = circuitBreaker?.openings() ?: 0,
+                        scenarios = scenarioReports(),
+                    )
+                )
+            }
+        }
+    }
+
+    /**
+     * Result of an attempt of a [Scenario], failures of its task supplier are already turned into a null result.
+     */
+    private class ScenarioAttempt<T>(val scenario: Int, val taskResult: T?, val latencyNanos: Long)
+
+    /**
+     * Shuts down the worker pool kept with `reuseWorkerPool`, waiting up to `terminationTimeout` for its threads.
+     * Does nothing when every run uses its own pool.
+     */
+    override fun close() {
+        if (sharedWorkerPool != null) {
+            runPermit.acquireUninterruptibly()
+            try {
+                shutdown(sharedWorkerPool)
+            } finally {
+                runPermit.release()
+            }
+        }
+    }
+
+    private fun stopAtNanos(measurementStartNanos: Long, duration: Duration?, deadline: Instant?): Long? {
+        val durationEnd = duration?.let { measurementStartNanos + it.toNanos() }
+        val deadlineEnd = deadline?.let { System.nanoTime() + Duration.between(Instant.now(), it).toNanos() }
+        return listOfNotNull(durationEnd, deadlineEnd).minOrNull()
+    }
+
+    private fun newWorkerPool(threads: Int): WorkerPool {
+        val poolName = "concurrent-successful-task-collector-pool-${poolCount.incrementAndGet()}"
+        val threadCount = AtomicInteger(0)
+        return WorkerPool(poolName, Executors.newFixedThreadPool(threads) {
+            Thread(it).apply { name = "$poolName-thread-${threadCount.incrementAndGet()}" }
+        })
+    }
+
+    private fun shutdown(executor: ExecutorService) {
+        executor.shutdown()
+        try {
+            if (!executor.awaitTermination(terminationTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
                 executor.shutdownNow()
-                Thread.currentThread().interrupt()
             }
+        } catch (e: InterruptedException) {
+            executor.shutdownNow()
+            Thread.currentThread().interrupt()
         }
-        return TasksCount(
-            successful = successfulResults.get(),
-            failed = attemptCount.get() - successfulResults.get(),
-        )
     }
 
+    internal class WorkerPool(val name: String, executor: ExecutorService) : ExecutorService by executor
+
+    private fun handleSuccess(taskResult: T, onSuccess: (T) -> Unit): Boolean =
+        try {
+            onSuccess(taskResult)
+            true
+        } catch (e: Exception) {
+            logger.debug(e) { "Handling successful result failed" }
+            false
+        }
+
 }
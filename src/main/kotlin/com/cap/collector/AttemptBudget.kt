@@ -0,0 +1,143 @@
+package com.cap.collector
+
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Lock-free coordination of attempts shared by workers of a collector run.
+ *
+ * Number of successful results and number of reserved attempts are packed into a single 64-bit word
+ * (successes in the high half, attempts in the low half), so checking the stop condition and reserving
+ * an attempt is one compare-and-set. Because of that an attempt is never reserved once `maxAttempts` is reached,
+ * nor once `minNumberOfResults` successful results have been recorded.
+ * Successful results of attempts still in flight when the target is reached are counted,
+ * so successes may exceed `minNumberOfResults` by at most the number of concurrent workers.
+ *
+ * The packed word is kept in a [BudgetState], by default on its own cache lines in this process.
+ * With a [BudgetState.isShared] state several processes reserve from the same word, then the stop condition applies
+ * to their combined counts, while [successful], [attempts] and [failed] still report this budget only.
+ * Failures are not part of the stop condition and are counted in a striped [LongAdder].
+ * [stop] ends the run early, attempts already in flight are still recorded.
+ * Attempts producing several results count them with [claimResults], which trims them at `minNumberOfResults`.
+ *
+ * @param stopAtNanos Optional [System.nanoTime] after which no attempt is reserved
+ * @param state Storage of the packed word
+ */
+class AttemptBudget @JvmOverloads constructor(
+    private val minNumberOfResults: Int,
+    private val maxAttempts: Int,
+    stopAtNanos: Long? = null,
+    private val state: BudgetState = PaddedBudgetState(),
+) {
+    init {
+        require(maxAttempts > 0) { "maxAttempts must be greater than 0" }
+        require(minNumberOfResults > 0) { "minNumberOfResults must be greater than 0" }
+    }
+
+    private val failures = LongAdder()
+    private val ownSuccesses = if (state.isShared) LongAdder() else null
+    private val ownAttempts = if (state.isShared) LongAdder() else null
+
+    private val timeLimited = stopAtNanos != null
+    private val stopAtNanos = stopAtNanos ?: 0L
+
+    @Volatile
+    private var stopped = false
+
+    /**
+     * @return true when an attempt was reserved and the caller should execute it,
+     * false when the run should stop
+     */
+    fun tryReserveAttempt(): Boolean {
+        if (timeLimited && System.nanoTime() - stopAtNanos >= 0) {
+            return false
+        }
+        while (!stopped) {
+            val current = state.get()
+            if (successes(current) >= minNumberOfResults || attempts(current) >= maxAttempts) {
+                return false
+            }
+            if (state.compareAndSet(current, current + 1)) {
+                ownAttempts?.increment()
+                return true
+            }
+        }
+        return false
+    }
+
+    /**
+     * Continues from counts recorded by a previous run, to be called before any attempt is reserved.
+     */
+    fun resume(successful: Int, failed: Int) {
+        state.getAndAdd(successful * ONE_SUCCESS + successful + failed)
+        failures.add(failed.toLong())
+        ownSuccesses?.add(successful.toLong())
+        ownAttempts?.add(successful.toLong() + failed)
+    }
+
+    /**
+     * Makes [tryReserveAttempt] return false from now on, a reservation racing with this call may still succeed.
+     */
+    fun stop() {
+        stopped = true
+    }
+
+    fun recordSuccess() {
+        state.getAndAdd(ONE_SUCCESS)
+        ownSuccesses?.increment()
+    }
+
+    /**
+     * Counts up to [count] successful results of one attempt, never going past `minNumberOfResults`.
+     *
+     * @return number of results counted, the rest of the attempt's results are to be dropped
+     */
+    fun claimResults(count: Int): Int {
+        while (true) {
+            val current = state.get()
+            val claimed = minOf(count.toLong(), minNumberOfResults.toLong() - successes(current)).coerceAtLeast(0).toInt()
+            if (claimed == 0 || state.compareAndSet(current, current + claimed * ONE_SUCCESS)) {
+                ownSuccesses?.add(claimed.toLong())
+                return claimed
+            }
+        }
+    }
+
+    /**
+     * Gives back results counted by [claimResults] that turned out not to be usable.
+     */
+    fun releaseResults(count: Int) {
+        state.getAndAdd(-count * ONE_SUCCESS)
+        ownSuccesses?.add(-count.toLong())
+    }
+
+    fun recordFailure() {
+        failures.increment()
+    }
+
+    fun successful(): Int = ownSuccesses?.sum()?.toInt() ?: successes(state.get())
+
+    fun attempts(): Int = ownAttempts?.sum()?.toInt() ?: attempts(state.get())
+
+    /**
+     * @return successes of every budget sharing the [state]
+     */
+    fun totalSuccessful(): Int = successes(state.get())
+
+    fun failed(): Int = failures.sum().toInt()
+
+    fun isExhausted(): Boolean {
+        if (stopped || (timeLimited && System.nanoTime() - stopAtNanos >= 0)) {
+            return true
+        }
+        val current = state.get()
+        return successes(current) >= minNumberOfResults || attempts(current) >= maxAttempts
+    }
+
+    private companion object {
+        private const val ONE_SUCCESS = 1L shl 32
+
+        private fun successes(state: Long): Int = (state ushr 32).toInt()
+
+        private fun attempts(state: Long): Int = state.toInt()
+    }
+}
@@ -0,0 +1,133 @@
+package com.cap.collector
+
+import java.time.Duration
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Detects attempts running longer than [timeout] and takes them away from their workers.
+ *
+ * A worker marks every attempt with [WatchedWorker.attemptStarted] and [WatchedWorker.attemptFinished].
+ * A single watchdog thread checks running attempts a few times per timeout. An attempt that runs too long is
+ * claimed by the watchdog with a compare-and-set, so it is either finished by its worker or timed out, never both.
+ * The state is stamped with the attempt number, so the compare-and-set fails when the attempt the watchdog
+ * looked at was finished and the worker already started the next one.
+ * The watchdog interrupts the worker thread and calls [onTimeout], after which the worker must not record
+ * the attempt nor start another one, even if its task eventually returns.
+ *
+ * @param onTimeout Called from the watchdog thread with the worker whose attempt timed out
+ */
+class AttemptWatchdog(
+    private val timeout: Duration,
+    threadName: String,
+    private val onTimeout: (WatchedWorker) -> Unit,
+) : AutoCloseable {
+    init {
+        require(!timeout.isNegative && !timeout.isZero) { "timeout must be positive" }
+    }
+
+    private val workers = ConcurrentLinkedQueue<WatchedWorker>()
+    private val scheduler = Executors.newSingleThreadScheduledExecutor { task ->
+        Thread(task, threadName).apply { isDaemon = true }
+    }.apply {
+        val periodNanos = (timeout.toNanos() / 10).coerceIn(MIN_PERIOD_NANOS, MAX_PERIOD_NANOS)
+        scheduleWithFixedDelay(::check, periodNanos, periodNanos, TimeUnit.NANOSECONDS)
+    }
+
+    /**
+     * Starts watching attempts of the calling thread.
+     */
+    fun register(): WatchedWorker = WatchedWorker(Thread.currentThread()).also { workers += it }
+
+    override fun close() {
+        scheduler.shutdownNow()
+    }
+
+    private fun check() {
+        val now = System.nanoTime()
+        for (worker in workers) {
+            val stamp = worker.state.get()
+            if (stateOf(stamp) == RUNNING && now - worker.attemptStartNanos >= timeout.toNanos()) {
+                if (worker.state.compareAndSet(stamp, stamp(attemptOf(stamp), INTERRUPTING))) {
+                    worker.thread.interrupt()
+                    worker.state.set(stamp(attemptOf(stamp), TIMED_OUT))
+                    workers -= worker
+                    onTimeout(worker)
+                }
+            }
+        }
+    }
+
+    inner class WatchedWorker internal constructor(internal val thread: Thread) {
+        /**
+         * Attempt number and its state, see [stamp].
+         */
+        internal val state = AtomicLong(stamp(0, IDLE))
+
+        // written by the worker thread only
+        private var attempt = 0L
+
+        @Volatile
+        var attemptStartNanos = 0L
+            private set
+
+        /**
+         * Circuit breaker permission of the current attempt, null without a circuit breaker.
+         */
+        @Volatile
+        var permit: CircuitBreaker.Permit? = null
+            private set
+
+        /**
+         * False for warmup attempts.
+         */
+        @Volatile
+        var measured = false
+            private set
+
+        fun attemptStarted(permit: CircuitBreaker.Permit?, measured: Boolean) {
+            this.permit = permit
+            this.measured = measured
+            attemptStartNanos = System.nanoTime()
+            state.set(stamp(++attempt, RUNNING))
+        }
+
+        /**
+         * @return true when the attempt finished in time, false when it was timed out and the worker must stop
+         */
+        fun attemptFinished(): Boolean {
+            if (state.compareAndSet(stamp(attempt, RUNNING), stamp(attempt, IDLE))) {
+                return true
+            }
+            while (stateOf(state.get()) == INTERRUPTING) {
+                Thread.onSpinWait()
+            }
+            // the interrupt was meant for the timed out task only
+            Thread.interrupted()
+            return false
+        }
+
+        fun unregister() {
+            workers -= this
+        }
+    }
+
+    private companion object {
+        private const val IDLE = 0
+        private const val RUNNING = 1
+        private const val INTERRUPTING = 2
+        private const val TIMED_OUT = 3
+        private val MIN_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(1)
+        private val MAX_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(100)
+        private const val STATE_BITS = 2
+        private const val STATE_MASK = (1L shl STATE_BITS) - 1
+
+        private fun stamp(attempt: Long, state: Int): Long = (attempt shl STATE_BITS) or state.toLong()
+
+        private fun attemptOf(stamp: Long): Long = stamp ushr STATE_BITS
+
+        private fun stateOf(stamp: Long): Int = (stamp and STATE_MASK).toInt()
+    }
+}
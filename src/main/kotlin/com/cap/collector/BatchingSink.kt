@@ -0,0 +1,122 @@
+package com.cap.collector
+
+import mu.KotlinLogging
+import java.time.Duration
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.TimeUnit
+
+/**
+ * Configuration of asynchronous, batched delivery of successful results.
+ *
+ * @param onSuccessBatch Callback receiving up to [batchSize] results at once, always called from a single consumer thread
+ * @param batchSize Maximum number of results in a batch
+ * @param maxBatchAge Maximum time the first result of a batch waits for the batch to fill up
+ * @param queueCapacity Number of results that can wait for delivery, workers block when it is reached
+ */
+data class BatchDelivery<T>(
+    val onSuccessBatch: (List<T>) -> Unit,
+    val batchSize: Int = 100,
+    val maxBatchAge: Duration = Duration.ofSeconds(1),
+    val queueCapacity: Int = batchSize * 10,
+) {
+    init {
+        require(batchSize > 0) { "batchSize must be greater than 0" }
+        require(!maxBatchAge.isNegative && !maxBatchAge.isZero) { "maxBatchAge must be positive" }
+        require(queueCapacity >= batchSize) { "queueCapacity must be greater than or equal to batchSize" }
+    }
+}
+
+/**
+ * Bounded queue drained by a single consumer thread that delivers results in batches.
+ *
+ * [put] blocks while the queue is full, so a sink that cannot keep up slows down the producers instead of
+ * buffering an unbounded number of results. [close] delivers everything that was put before it and stops the consumer.
+ * An exception thrown by `onSuccessBatch` is logged and delivery goes on with the next batch. Any other failure of the
+ * consumer thread (e.g. an [Error]) stops it, then [put] and [close] throw [IllegalStateException] instead of waiting
+ * for a consumer that is gone.
+ */
+class BatchingSink<T>(
+    private val delivery: BatchDelivery<T>,
+    threadName: String,
+) : AutoCloseable {
+    private val queue = ArrayBlockingQueue<Any>(delivery.queueCapacity)
+    private val consumer = Thread(::drain, threadName).apply { isDaemon = true }
+
+    @Volatile
+    private var consumerFailure: Throwable? = null
+
+    init {
+        consumer.start()
+    }
+
+    fun put(result: T) {
+        enqueue(result as Any)
+    }
+
+    override fun close() {
+        enqueue(END_OF_RESULTS)
+        consumer.join()
+        checkConsumer()
+    }
+
+    private fun enqueue(element: Any) {
+        checkConsumer()
+        while (!queue.offer(element, CONSUMER_CHECK_NANOS, TimeUnit.NANOSECONDS)) {
+            checkConsumer()
+        }
+    }
+
+    private fun checkConsumer() {
+        consumerFailure?.let { throw IllegalStateException("Batch delivery stopped", it) }
+    }
+
+    private fun drain() {
+        try {
+            deliverBatches()
+        } catch (e: Throwable) {
+            consumerFailure = e
+            logger.error(e) { "Batch delivery stopped" }
+        }
+    }
+
+    private fun deliverBatches() {
+        val batch = ArrayList<T>(delivery.batchSize)
+        var finished = false
+        while (!finished) {
+            finished = add(queue.take(), batch)
+            val batchDeadline = System.nanoTime() + delivery.maxBatchAge.toNanos()
+            while (!finished && batch.size < delivery.batchSize) {
+                val next = queue.poll(batchDeadline - System.nanoTime(), TimeUnit.NANOSECONDS) ?: break
+                finished = add(next, batch)
+            }
+            deliver(batch)
+            batch.clear()
+        }
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun add(element: Any, batch: MutableList<T>): Boolean {
+        if (element === END_OF_RESULTS) {
+            return true
+        }
+        batch += element as T
+        return false
+    }
+
+    private fun deliver(batch: List<T>) {
+        if (batch.isEmpty()) {
+            return
+        }
+        try {
+            delivery.onSuccessBatch(ArrayList(batch))
+        } catch (e: Exception) {
+            logger.error(e) { "Delivering batch of ${batch.size} results failed" }
+        }
+    }
+
+    private companion object {
+        private val logger = KotlinLogging.logger {}
+        private val END_OF_RESULTS = Any()
+        private val CONSUMER_CHECK_NANOS = Duration.ofMillis(10).toNanos()
+    }
+}
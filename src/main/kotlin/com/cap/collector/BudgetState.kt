@@ -0,0 +1,41 @@
+package com.cap.collector
+
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Storage of the 64-bit word in which [AttemptBudget] packs successes and reserved attempts.
+ */
+interface BudgetState {
+    /**
+     * True when other processes may update the same word, so it contains their successes and attempts too.
+     */
+    val isShared: Boolean
+
+    fun get(): Long
+
+    fun compareAndSet(expected: Long, newValue: Long): Boolean
+
+    fun getAndAdd(delta: Long): Long
+}
+
+/**
+ * In-process [BudgetState]. The word lives in the middle of a padded array,
+ * so it does not share a cache line with other data.
+ */
+class PaddedBudgetState : BudgetState {
+    private val padded = AtomicLongArray(PADDED_LENGTH)
+
+    override val isShared = false
+
+    override fun get(): Long = padded.get(STATE_INDEX)
+
+    override fun compareAndSet(expected: Long, newValue: Long): Boolean = padded.compareAndSet(STATE_INDEX, expected, newValue)
+
+    override fun getAndAdd(delta: Long): Long = padded.getAndAdd(STATE_INDEX, delta)
+
+    private companion object {
+        private const val CACHE_LINE_LONGS = 16
+        private const val STATE_INDEX = CACHE_LINE_LONGS
+        private const val PADDED_LENGTH = 2 * CACHE_LINE_LONGS + 1
+    }
+}
@@ -0,0 +1,153 @@
+package com.cap.collector
+
+import mu.KotlinLogging
+import java.io.DataInputStream
+import java.io.EOFException
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.time.Duration
+import java.util.concurrent.ConcurrentLinkedQueue
+
+/**
+ * Configuration of periodic checkpoints of a collector run.
+ *
+ * Counts are kept in a small memory-mapped [file], keys of successful results (when [resultKey] is given)
+ * are appended to `<file>.keys`. A run started with the checkpoint of a previous, interrupted run
+ * continues from the recorded counts.
+ *
+ * @param file Checkpoint file, created when missing
+ * @param interval How often progress is written
+ * @param resultKey Optional key of a successful result, e.g. id of a created entity, see [recordedKeys]
+ */
+data class Checkpoint<T>(
+    val file: Path,
+    val interval: Duration = Duration.ofSeconds(10),
+    val resultKey: ((T) -> String)? = null,
+) {
+    init {
+        require(!interval.isNegative && !interval.isZero) { "interval must be positive" }
+    }
+
+    val keysFile: Path
+        get() = file.resolveSibling("${file.fileName}.keys")
+
+    /**
+     * @return keys of successful results recorded so far, e.g. to skip entities created before a crash
+     */
+    fun recordedKeys(): List<String> = CheckpointFile.readKeys(keysFile)
+}
+
+/**
+ * Progress recorded in a checkpoint.
+ */
+data class RecordedProgress(val successful: Int, val failed: Int)
+
+/**
+ * Writer of a [Checkpoint]. Workers only add keys to an in-memory queue,
+ * all file writes happen in [flush] called from a single checkpointing thread.
+ *
+ * Keys are forced to disk before counts, so after a crash the key log is never behind the counts.
+ */
+class CheckpointFile<T>(private val checkpoint: Checkpoint<T>) : AutoCloseable {
+    private val countsChannel = FileChannel.open(checkpoint.file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+    private val counts: MappedByteBuffer = countsChannel.map(FileChannel.MapMode.READ_WRITE, 0, COUNTS_SIZE)
+    private val keysChannel = checkpoint.resultKey?.let {
+        FileChannel.open(checkpoint.keysFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+    }
+    private val pendingKeys = ConcurrentLinkedQueue<String>()
+
+    /**
+     * Progress of the previous run, zero counts for a new checkpoint.
+     */
+    val recorded: RecordedProgress
+
+    init {
+        val magic = counts.getLong(MAGIC_OFFSET)
+        if (magic != 0L && magic != MAGIC) {
+            close()
+            throw IllegalArgumentException("${checkpoint.file} is not a collector checkpoint file")
+        }
+        counts.putLong(MAGIC_OFFSET, MAGIC)
+        val recordedSuccesses = counts.getInt(SUCCESSES_OFFSET)
+        val recordedKeys = keysChannel?.let { channel ->
+            val (keys, validLength) = scanKeys(checkpoint.keysFile)
+            channel.truncate(validLength)
+            keys.size
+        } ?: 0
+        recorded = RecordedProgress(
+            successful = maxOf(recordedSuccesses, recordedKeys),
+            failed = counts.getInt(FAILURES_OFFSET),
+        )
+    }
+
+    fun recordKey(result: T) {
+        checkpoint.resultKey?.let { pendingKeys += it(result) }
+    }
+
+    /**
+     * Writes keys recorded since the last flush and the given counts.
+     */
+    fun flush(successful: Int, failed: Int) {
+        keysChannel?.let { channel ->
+            var key = pendingKeys.poll()
+            while (key != null) {
+                val bytes = key.toByteArray(Charsets.UTF_8)
+                val record = ByteBuffer.allocate(Int.SIZE_BYTES + bytes.size).putInt(bytes.size).put(bytes).flip()
+                while (record.hasRemaining()) {
+                    channel.write(record)
+                }
+                key = pendingKeys.poll()
+            }
+            channel.force(false)
+        }
+        counts.putInt(SUCCESSES_OFFSET, successful)
+        counts.putInt(FAILURES_OFFSET, failed)
+        counts.force()
+    }
+
+    override fun close() {
+        keysChannel?.close()
+        countsChannel.close()
+    }
+
+    companion object {
+        private val logger = KotlinLogging.logger {}
+        private const val MAGIC = 0x4353_5443_4348_4b50L
+        private const val MAGIC_OFFSET = 0
+        private const val SUCCESSES_OFFSET = 8
+        private const val FAILURES_OFFSET = 12
+        private const val COUNTS_SIZE = 64L
+
+        fun readKeys(keysFile: Path): List<String> = scanKeys(keysFile).first
+
+        /**
+         * Reads length-prefixed UTF-8 keys, ignoring a record torn by a crash.
+         *
+         * @return keys and length of the file up to the end of the last complete record
+         */
+        private fun scanKeys(keysFile: Path): Pair<List<String>, Long> {
+            if (!Files.exists(keysFile)) {
+                return Pair(emptyList(), 0)
+            }
+            val keys = mutableListOf<String>()
+            var validLength = 0L
+            DataInputStream(Files.newInputStream(keysFile).buffered()).use { input ->
+                try {
+                    while (true) {
+                        val bytes = ByteArray(input.readInt())
+                        input.readFully(bytes)
+                        keys += String(bytes, Charsets.UTF_8)
+                        validLength += Int.SIZE_BYTES + bytes.size
+                    }
+                } catch (e: EOFException) {
+                    logger.debug { "Read ${keys.size} keys from $keysFile" }
+                }
+            }
+            return Pair(keys, validLength)
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.cap.collector
+
+import mu.KotlinLogging
+import java.time.Duration
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicIntegerArray
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * Configuration of a [CircuitBreaker].
+ *
+ * @param failureRateThreshold Fraction of failed attempts among the last [window] ones that opens the circuit
+ * @param window Number of most recent attempts the failure rate is computed from
+ * @param minimumAttempts Number of attempts needed before the failure rate is evaluated
+ * @param openDuration How long all workers pause before a single probe attempt is made
+ */
+data class CircuitBreakerPolicy(
+    val failureRateThreshold: Double = 0.5,
+    val window: Int = 100,
+    val minimumAttempts: Int = 20,
+    val openDuration: Duration = Duration.ofSeconds(5),
+) {
+    init {
+        require(failureRateThreshold > 0.0 && failureRateThreshold <= 1.0) { "failureRateThreshold must be in range (0, 1]" }
+        require(window > 0) { "window must be greater than 0" }
+        require(minimumAttempts in 1..window) { "minimumAttempts must be between 1 and window" }
+        require(!openDuration.isNegative && !openDuration.isZero) { "openDuration must be positive" }
+    }
+}
+
+/**
+ * Circuit breaker shared by workers of a run.
+ *
+ * While closed, outcomes of attempts are recorded in a lock-free ring of the last `window` outcomes.
+ * When the failure rate reaches the threshold the circuit opens and [awaitPermission] pauses every worker
+ * for `openDuration`. Then exactly one worker is let through as a probe: its success closes the circuit,
+ * its failure opens it again. Every transition starts a new generation of the state and a [Permit] remembers the generation
+ * it was issued in, so outcomes of attempts started before the last transition are ignored: a failure started before
+ * the circuit opened cannot open it again right after a probe closed it.
+ */
+class CircuitBreaker(private val policy: CircuitBreakerPolicy) {
+    private val state = AtomicReference<State>(State.Closed(generation = 0))
+    private val outcomes = AtomicIntegerArray(policy.window)
+    private val cursor = AtomicLong()
+    private val recentFailures = AtomicInteger()
+    private val openings = AtomicInteger()
+
+    /**
+     * Permission to execute one attempt, to be passed to [record] with the attempt's outcome.
+     *
+     * @param probe True when the attempt is the probe deciding whether the circuit closes
+     */
+    class Permit internal constructor(val probe: Boolean, internal val generation: Long)
+
+    /**
+     * Waits while the circuit is open or a probe is in flight.
+     *
+     * @param shouldStop Checked while waiting, stops waiting when the run is over
+     * @return permission for the next attempt, null when waiting stopped because of [shouldStop]
+     */
+    fun awaitPermission(shouldStop: () -> Boolean): Permit? {
+        while (!shouldStop()) {
+            when (val current = state.get()) {
+                is State.Closed -> return Permit(probe = false, generation = current.generation)
+                is State.HalfOpen -> LockSupport.parkNanos(PROBE_POLL_NANOS)
+                is State.Open -> {
+                    val remaining = current.untilNanos - System.nanoTime()
+                    val halfOpen = State.HalfOpen(current.generation + 1)
+                    if (remaining > 0) {
+                        LockSupport.parkNanos(minOf(remaining, PROBE_POLL_NANOS))
+                    } else if (state.compareAndSet(current, halfOpen)) {
+                        return Permit(probe = true, generation = halfOpen.generation)
+                    }
+                }
+            }
+        }
+        return null
+    }
+
+    fun record(successful: Boolean, permit: Permit) {
+        val current = state.get()
+        if (current.generation != permit.generation) {
+            return
+        }
+        if (permit.probe) {
+            if (successful) {
+                reset()
+                state.set(State.Closed(current.generation + 1))
+                logger.info { "Circuit closed after successful probe" }
+            } else {
+                state.set(State.Open(System.nanoTime() + policy.openDuration.toNanos(), current.generation + 1))
+            }
+            return
+        }
+        val position = cursor.getAndIncrement()
+        val failure = if (successful) 0 else 1
+        val failures = recentFailures.addAndGet(failure - outcomes.getAndSet((position % policy.window).toInt(), failure))
+        val seen = minOf(position + 1, policy.window.toLong())
+        if (seen >= policy.minimumAttempts && failures >= policy.failureRateThreshold * seen) {
+            if (state.compareAndSet(current, State.Open(System.nanoTime() + policy.openDuration.toNanos(), current.generation + 1))) {
+                openings.incrementAndGet()
+                logger.warn { "Circuit opened, $failures of last $seen attempts failed" }
+            }
+        }
+    }
+
+    /**
+     * @return how many times the circuit opened because of the failure rate
+     */
+    fun openings(): Int = openings.get()
+
+    private fun reset() {
+        for (index in 0 until policy.window) {
+            outcomes.set(index, 0)
+        }
+        recentFailures.set(0)
+        cursor.set(0)
+    }
+
+    /**
+     * @param generation Number of transitions before this state
+     */
+    private sealed class State(val generation: Long) {
+        class Closed(generation: Long) : State(generation)
+        class HalfOpen(generation: Long) : State(generation)
+        class Open(val untilNanos: Long, generation: Long) : State(generation)
+    }
+
+    private companion object {
+        private val logger = KotlinLogging.logger {}
+        private val PROBE_POLL_NANOS = Duration.ofMillis(10).toNanos()
+    }
+}
@@ -0,0 +1,78 @@
+package com.cap.collector
+
+import java.nio.file.Path
+import java.time.Duration
+import java.time.Instant
+import java.util.function.Consumer
+
+/**
+ * Options of a [com.cap.ConcurrentSuccessfulTaskCollector] run for Java callers, which cannot use named and default
+ * arguments. Every option has the meaning and default of the parameter of the same name of
+ * [com.cap.ConcurrentSuccessfulTaskCollector.startCollecting].
+ *
+ * ```
+ * new CollectionOptions.Builder<Integer>()
+ *     .withMaxAttempts(1_000)
+ *     .withDuration(Duration.ofSeconds(30))
+ *     .build()
+ * ```
+ */
+class CollectionOptions<T> private constructor(builder: Builder<T>) {
+    val onSuccess: (T) -> Unit = builder.onSuccess
+    val minNumberOfResults: Int = builder.minNumberOfResults
+    val maxAttempts: Int = builder.maxAttempts
+    val batchDelivery: BatchDelivery<T>? = builder.batchDelivery
+    val duration: Duration? = builder.duration
+    val deadline: Instant? = builder.deadline
+    val warmup: Duration = builder.warmup
+    val sharedBudgetFile: Path? = builder.sharedBudgetFile
+    val checkpoint: Checkpoint<T>? = builder.checkpoint
+    val failureBackoff: FailureBackoff? = builder.failureBackoff
+    val circuitBreaker: CircuitBreakerPolicy? = builder.circuitBreaker
+    val attemptTimeout: Duration? = builder.attemptTimeout
+    val beforeAttempt: (() -> Unit)? = builder.beforeAttempt
+
+    class Builder<T> {
+        internal var onSuccess: (T) -> Unit = {}
+        internal var minNumberOfResults = Int.MAX_VALUE
+        internal var maxAttempts = Int.MAX_VALUE
+        internal var batchDelivery: BatchDelivery<T>? = null
+        internal var duration: Duration? = null
+        internal var deadline: Instant? = null
+        internal var warmup: Duration = Duration.ZERO
+        internal var sharedBudgetFile: Path? = null
+        internal var checkpoint: Checkpoint<T>? = null
+        internal var failureBackoff: FailureBackoff? = null
+        internal var circuitBreaker: CircuitBreakerPolicy? = null
+        internal var attemptTimeout: Duration? = null
+        internal var beforeAttempt: (() -> Unit)? = null
+
+        fun withOnSuccess(onSuccess: Consumer<T>) = apply { this.onSuccess = onSuccess::accept }
+
+        fun withMinNumberOfResults(minNumberOfResults: Int) = apply { this.minNumberOfResults = minNumberOfResults }
+
+        fun withMaxAttempts(maxAttempts: Int) = apply { this.maxAttempts = maxAttempts }
+
+        fun withBatchDelivery(batchDelivery: BatchDelivery<T>) = apply { this.batchDelivery = batchDelivery }
+
+        fun withDuration(duration: Duration) = apply { this.duration = duration }
+
+        fun withDeadline(deadline: Instant) = apply { this.deadline = deadline }
+
+        fun withWarmup(warmup: Duration) = apply { this.warmup = warmup }
+
+        fun withSharedBudgetFile(sharedBudgetFile: Path) = apply { this.sharedBudgetFile = sharedBudgetFile }
+
+        fun withCheckpoint(checkpoint: Checkpoint<T>) = apply { this.checkpoint = checkpoint }
+
+        fun withFailureBackoff(failureBackoff: FailureBackoff) = apply { this.failureBackoff = failureBackoff }
+
+        fun withCircuitBreaker(circuitBreaker: CircuitBreakerPolicy) = apply { this.circuitBreaker = circuitBreaker }
+
+        fun withAttemptTimeout(attemptTimeout: Duration) = apply { this.attemptTimeout = attemptTimeout }
+
+        fun withBeforeAttempt(beforeAttempt: Runnable) = apply { this.beforeAttempt = beforeAttempt::run }
+
+        fun build() = CollectionOptions(this)
+    }
+}
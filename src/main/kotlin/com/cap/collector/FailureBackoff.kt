@@ -0,0 +1,36 @@
+package com.cap.collector
+
+import java.time.Duration
+import kotlin.math.pow
+
+/**
+ * Exponential backoff of a worker after failed attempts.
+ *
+ * After `n` consecutive failures the worker waits `min(maxDelay, initialDelay * multiplier^(n-1))`,
+ * reduced by a random part of up to [jitter] of the delay, so workers failing together do not retry together.
+ * A successful attempt resets the delay. The wait ends early when the run is over, e.g. cancelled or out of attempts.
+ *
+ * @param jitter Fraction of the delay that is randomized, in range 0.0 - 1.0
+ */
+data class FailureBackoff(
+    val initialDelay: Duration = Duration.ofMillis(50),
+    val maxDelay: Duration = Duration.ofSeconds(5),
+    val multiplier: Double = 2.0,
+    val jitter: Double = 0.5,
+) {
+    init {
+        require(!initialDelay.isNegative && !initialDelay.isZero) { "initialDelay must be positive" }
+        require(maxDelay >= initialDelay) { "maxDelay must be greater than or equal to initialDelay" }
+        require(multiplier >= 1.0) { "multiplier must be greater than or equal to 1" }
+        require(jitter in 0.0..1.0) { "jitter must be between 0 and 1" }
+    }
+
+    /**
+     * @param random value in range 0.0 - 1.0
+     */
+    fun delayNanos(consecutiveFailures: Int, random: Double): Long {
+        val exponential = initialDelay.toNanos() * multiplier.pow(consecutiveFailures - 1)
+        val delay = minOf(exponential, maxDelay.toNanos().toDouble())
+        return (delay * (1 - jitter * random)).toLong()
+    }
+}
@@ -0,0 +1,117 @@
+package com.cap.collector
+
+import java.time.Duration
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * A lock-free histogram of latencies recorded in nanoseconds.
+ *
+ * Values are stored in log-linear buckets: every power of 2 is split into [SUB_BUCKET_COUNT] linear sub-buckets,
+ * so the relative error of a reported percentile is below 1 / [SUB_BUCKET_COUNT] (~3%).
+ * Recording is a single increment of a bucket counter, concurrent writers of different latencies
+ * hit different buckets, so contention stays low even with many workers.
+ */
+class LatencyHistogram {
+    private val counts = AtomicLongArray(BUCKET_COUNT)
+    private val totalNanos = LongAdder()
+
+    fun record(latencyNanos: Long) {
+        val value = latencyNanos.coerceAtLeast(0)
+        counts.incrementAndGet(bucketIndex(value))
+        totalNanos.add(value)
+    }
+
+    /**
+     * Copies the current bucket counts. Concurrent recordings may or may not be included.
+     */
+    fun snapshot(): LatencySnapshot {
+        val copy = LongArray(BUCKET_COUNT) { counts.get(it) }
+        return LatencySnapshot(copy, totalNanos.sum())
+    }
+
+    internal companion object {
+        private const val SUB_BUCKET_BITS = 5
+        private const val SUB_BUCKET_COUNT = 1 shl SUB_BUCKET_BITS
+        private const val LINEAR_LIMIT = SUB_BUCKET_COUNT * 2
+        const val BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT
+
+        fun bucketIndex(value: Long): Int {
+            if (value < LINEAR_LIMIT) {
+                return value.toInt()
+            }
+            val exponent = 63 - java.lang.Long.numberOfLeadingZeros(value)
+            val subBucket = (value ushr (exponent - SUB_BUCKET_BITS)).toInt() - SUB_BUCKET_COUNT
+            return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket
+        }
+
+        /**
+         * @return the highest value that falls into the bucket
+         */
+        fun highestValueIn(bucketIndex: Int): Long {
+            if (bucketIndex < LINEAR_LIMIT) {
+                return bucketIndex.toLong()
+            }
+            val exponent = bucketIndex / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1
+            val subBucket = (bucketIndex % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT).toLong()
+            val shift = exponent - SUB_BUCKET_BITS
+            return if (exponent == 63 && subBucket == (2L * SUB_BUCKET_COUNT - 1)) {
+                Long.MAX_VALUE
+            } else {
+                ((subBucket + 1) shl shift) - 1
+            }
+        }
+    }
+}
+
+/**
+ * Immutable copy of a [LatencyHistogram].
+ */
+class LatencySnapshot internal constructor(
+    private val counts: LongArray,
+    private val totalNanos: Long,
+) {
+    val count: Long = counts.sum()
+
+    val mean: Duration
+        get() = if (count == 0L) Duration.ZERO else Duration.ofNanos(totalNanos / count)
+
+    val max: Duration
+        get() = percentile(100.0)
+
+    val p50: Duration
+        get() = percentile(50.0)
+
+    val p90: Duration
+        get() = percentile(90.0)
+
+    val p99: Duration
+        get() = percentile(99.0)
+
+    val p999: Duration
+        get() = percentile(99.9)
+
+    /**
+     * @param percentile value in range 0.0 - 100.0
+     * @return the smallest bucket boundary that covers at least [percentile] percent of recorded values,
+     * [Duration.ZERO] when nothing was recorded
+     */
+    fun percentile(percentile: Double): Duration {
+        require(percentile in 0.0..100.0) { "percentile must be between 0 and 100" }
+        if (count == 0L) {
+            return Duration.ZERO
+        }
+        val rank = Math.ceil(percentile / 100.0 * count).toLong().coerceIn(1, count)
+        var seen = 0L
+        for (index in counts.indices) {
+            seen += counts[index]
+            if (seen >= rank) {
+                return Duration.ofNanos(LatencyHistogram.highestValueIn(index))
+            }
+        }
+        return Duration.ofNanos(LatencyHistogram.highestValueIn(counts.lastIndex))
+    }
+
+    override fun toString(): String =
+        "LatencySnapshot(count=$count, mean=$mean, p50=$p50, p90=$p90, p99=$p99, p999=$p999, max=$max)"
+}
@@ -0,0 +1,54 @@
+package com.cap.collector
+
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.VarHandle
+import java.nio.ByteOrder
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+
+/**
+ * [BudgetState] kept in a memory-mapped file, so collectors in several processes on the same host
+ * share one attempt budget. Atomic [VarHandle] operations on the mapped page are visible to every process
+ * mapping the file.
+ *
+ * A missing file is created with zero counts. The file is never reset by the collector,
+ * use a new file (or delete the old one) for every job.
+ *
+ * Layout: magic number at offset 0, packed state at offset [STATE_OFFSET], each on its own cache line.
+ */
+class MappedBudgetState(path: Path) : BudgetState, AutoCloseable {
+    private val channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+    private val buffer: MappedByteBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE)
+
+    init {
+        val magic = LONGS.compareAndExchange(buffer, MAGIC_OFFSET, 0L, MAGIC) as Long
+        if (magic != 0L && magic != MAGIC) {
+            channel.close()
+            throw IllegalArgumentException("$path is not a collector budget file")
+        }
+    }
+
+    override val isShared = true
+
+    override fun get(): Long = LONGS.getVolatile(buffer, STATE_OFFSET) as Long
+
+    override fun compareAndSet(expected: Long, newValue: Long): Boolean =
+        LONGS.compareAndSet(buffer, STATE_OFFSET, expected, newValue)
+
+    override fun getAndAdd(delta: Long): Long = LONGS.getAndAdd(buffer, STATE_OFFSET, delta) as Long
+
+    override fun close() {
+        buffer.force()
+        channel.close()
+    }
+
+    private companion object {
+        private val LONGS: VarHandle = MethodHandles.byteBufferViewVarHandle(LongArray::class.java, ByteOrder.nativeOrder())
+        private const val MAGIC = 0x4353_5443_4255_4447L
+        private const val MAGIC_OFFSET = 0
+        private const val STATE_OFFSET = 64
+        private const val FILE_SIZE = 128L
+    }
+}
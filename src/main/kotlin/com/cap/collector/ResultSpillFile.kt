@@ -0,0 +1,198 @@
+package com.cap.collector
+
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.VarHandle
+import java.nio.ByteOrder
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * Append-only store of successful results outside the heap, to be used as `onSuccess = spill::append`
+ * when a run produces more results than should be kept in memory.
+ *
+ * Results are serialized by [encoder] into memory-mapped segment files `results-000000.spill`, `results-000001.spill`, ...
+ * of [segmentSize] bytes each. Every record is a 4-byte header followed by the encoded bytes padded to 4 bytes.
+ * A writer reserves its record with a single `getAndAdd` on the segment position, so concurrent workers never wait
+ * for each other while copying their bytes. The header holds `length + 1` and is written last with release semantics,
+ * a zero header therefore means the record is not committed (yet). The writer whose reservation crosses the end of
+ * a segment marks the end with [END_OF_SEGMENT] and maps the next segment, writers reserving meanwhile wait for it,
+ * spinning briefly and then parking, as mapping a file takes a system call or two.
+ * When mapping the next segment fails, the waiting writers and every later [append] throw [IllegalStateException]
+ * with the cause of the failure.
+ *
+ * Writers count themselves in and out of a segment. The last writer leaving a segment that was rolled over
+ * forces it to disk and drops this writer's reference to its buffer, so at most the current segment and the ones
+ * still being written by slow writers are held, however many segments the spill grows to. The JVM unmaps a dropped
+ * buffer once it is garbage collected, there is no public API to unmap it earlier.
+ *
+ * Use [read] to stream the results back.
+ *
+ * @param directory Directory of segment files, must not contain segments of another spill
+ * @param encoder Serializes a result, at most `segmentSize - 4` bytes
+ * @param segmentSize Size of every segment file in bytes
+ */
+class ResultSpillFile<T>(
+    private val directory: Path,
+    private val encoder: (T) -> ByteArray,
+    private val segmentSize: Int = 64 * 1024 * 1024,
+) : AutoCloseable {
+    init {
+        require(segmentSize >= MIN_SEGMENT_SIZE && segmentSize % Int.SIZE_BYTES == 0) {
+            "segmentSize must be a multiple of 4 and at least $MIN_SEGMENT_SIZE"
+        }
+        require(!Files.exists(segmentFile(directory, 0))) { "$directory already contains a spill" }
+        Files.createDirectories(directory)
+    }
+
+    @Volatile
+    private var current = Segment(0)
+    private val segments = ConcurrentLinkedQueue(listOf(current))
+
+    @Volatile
+    private var rollFailure: Throwable? = null
+
+    fun append(result: T) {
+        val bytes = encoder(result)
+        val recordSize = HEADER_SIZE + align(bytes.size)
+        require(recordSize <= segmentSize) { "Encoded result of ${bytes.size} bytes does not fit into a segment" }
+        while (true) {
+            checkRolled()
+            val segment = current
+            segment.writers.incrementAndGet()
+            try {
+                val position = segment.position.getAndAdd(recordSize)
+                if (position + recordSize <= segmentSize) {
+                    segment.buffer.put(position + HEADER_SIZE, bytes)
+                    INTS.setRelease(segment.buffer, position, bytes.size + 1)
+                    return
+                }
+                if (position <= segmentSize) {
+                    // the only reservation crossing the end of the segment rolls over to the next one
+                    if (position + HEADER_SIZE <= segmentSize) {
+                        INTS.setRelease(segment.buffer, position, END_OF_SEGMENT)
+                    }
+                    roll(segment)
+                } else {
+                    awaitRolled(segment)
+                }
+            } finally {
+                leave(segment)
+            }
+        }
+    }
+
+    private fun roll(segment: Segment) {
+        val next = try {
+            Segment(segment.index + 1)
+        } catch (e: Throwable) {
+            rollFailure = e
+            throw e
+        }
+        segments += next
+        current = next
+        segment.rolled = true
+    }
+
+    private fun awaitRolled(segment: Segment) {
+        var spins = 0
+        while (current === segment) {
+            checkRolled()
+            if (spins++ < MAX_SPINS) {
+                Thread.onSpinWait()
+            } else {
+                LockSupport.parkNanos(ROLL_PARK_NANOS)
+            }
+        }
+    }
+
+    private fun checkRolled() {
+        rollFailure?.let { throw IllegalStateException("Mapping the next segment failed", it) }
+    }
+
+    /**
+     * Every reservation fitting into the segment is made before the one rolling it over, so once the segment is rolled
+     * and nobody is inside, no record will be written into it anymore.
+     */
+    private fun leave(segment: Segment) {
+        if (segment.writers.decrementAndGet() == 0 && segment.rolled && segment.released.compareAndSet(false, true)) {
+            segment.buffer.force()
+            segments -= segment
+        }
+    }
+
+    /**
+     * @return number of segments still mapped by this writer
+     */
+    internal fun mappedSegments(): Int = segments.size
+
+    /**
+     * Forces segments still mapped to disk, to be called after the last [append] returned.
+     */
+    override fun close() {
+        segments.forEach { it.buffer.force() }
+    }
+
+    private inner class Segment(val index: Int) {
+        val position = AtomicInteger(0)
+        val writers = AtomicInteger(0)
+        val released = AtomicBoolean(false)
+
+        @Volatile
+        var rolled = false
+        val buffer: MappedByteBuffer = FileChannel.open(
+            segmentFile(directory, index),
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE,
+        ).use { it.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize.toLong()) }
+    }
+
+    companion object {
+        /**
+         * Header of the record that did not fit at the end of a segment.
+         */
+        const val END_OF_SEGMENT = -1
+        private const val HEADER_SIZE = Int.SIZE_BYTES
+        private const val MIN_SEGMENT_SIZE = 64
+        private const val MAX_SPINS = 100
+        private const val ROLL_PARK_NANOS = 10_000L
+        private val INTS: VarHandle = MethodHandles.byteBufferViewVarHandle(IntArray::class.java, ByteOrder.nativeOrder())
+
+        /**
+         * Streams results in the order of their reservation within every segment, mapping one segment at a time.
+         * A segment is read up to the first record that is not committed, which only happens when the writer
+         * was not closed properly, e.g. the process crashed.
+         */
+        fun <T> read(directory: Path, decoder: (ByteArray) -> T): Sequence<T> = sequence {
+            var index = 0
+            while (Files.exists(segmentFile(directory, index))) {
+                val buffer = FileChannel.open(segmentFile(directory, index), StandardOpenOption.READ).use {
+                    it.map(FileChannel.MapMode.READ_ONLY, 0, it.size())
+                }
+                var position = 0
+                while (position + HEADER_SIZE <= buffer.capacity()) {
+                    val header = INTS.getAcquire(buffer, position) as Int
+                    if (header == 0 || header == END_OF_SEGMENT) {
+                        break
+                    }
+                    val bytes = ByteArray(header - 1)
+                    buffer.get(position + HEADER_SIZE, bytes)
+                    yield(decoder(bytes))
+                    position += HEADER_SIZE + align(bytes.size)
+                }
+                index++
+            }
+        }
+
+        private fun align(size: Int): Int = (size + Int.SIZE_BYTES - 1) and (Int.SIZE_BYTES - 1).inv()
+
+        private fun segmentFile(directory: Path, index: Int): Path = directory.resolve("results-%06d.spill".format(index))
+    }
+}
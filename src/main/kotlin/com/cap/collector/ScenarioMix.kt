@@ -0,0 +1,77 @@
+package com.cap.collector
+
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Named task of a scenario mix, executed in proportion to its [weight] relative to other scenarios.
+ *
+ * @param name Unique name of the scenario, e.g. "search"
+ * @param weight Relative share of attempts, e.g. 70, 25 and 5 for a 70/25/5 mix
+ * @param taskSupplier A function that supplies the task logic and returns result or null on failure
+ */
+data class Scenario<T>(
+    val name: String,
+    val weight: Double,
+    val taskSupplier: () -> T?,
+) {
+    init {
+        require(weight > 0 && weight.isFinite()) { "weight must be positive" }
+    }
+}
+
+/**
+ * Weighted selection of [Scenario]s and per-scenario statistics of a collector run.
+ */
+class ScenarioMix<T>(val scenarios: List<Scenario<T>>) {
+    init {
+        require(scenarios.isNotEmpty()) { "at least one scenario must be given" }
+        require(scenarios.map { it.name }.toSet().size == scenarios.size) { "scenario names must be unique" }
+    }
+
+    private val cumulativeWeights = DoubleArray(scenarios.size).also { weights ->
+        var sum = 0.0
+        scenarios.forEachIndexed { index, scenario ->
+            sum += scenario.weight
+            weights[index] = sum
+        }
+    }
+    private val stats = List(scenarios.size) { ScenarioStats() }
+
+    /**
+     * @param random Uniformly distributed number in `[0, 1)`
+     * @return index of the scenario to execute
+     */
+    fun pick(random: Double): Int {
+        val point = random * cumulativeWeights.last()
+        val index = cumulativeWeights.binarySearch(point)
+        // an exact match is the upper bound of that scenario's range, so the point belongs to the next one
+        val scenario = if (index >= 0) index + 1 else -index - 1
+        return scenario.coerceAtMost(scenarios.size - 1)
+    }
+
+    fun record(scenario: Int, successful: Boolean, latencyNanos: Long) {
+        val scenarioStats = stats[scenario]
+        if (successful) {
+            scenarioStats.successes.increment()
+            scenarioStats.successLatency.record(latencyNanos)
+        } else {
+            scenarioStats.failures.increment()
+            scenarioStats.failureLatency.record(latencyNanos)
+        }
+    }
+
+    fun successful(scenario: Int): Int = stats[scenario].successes.sum().toInt()
+
+    fun failed(scenario: Int): Int = stats[scenario].failures.sum().toInt()
+
+    fun successLatency(scenario: Int): LatencySnapshot = stats[scenario].successLatency.snapshot()
+
+    fun failureLatency(scenario: Int): LatencySnapshot = stats[scenario].failureLatency.snapshot()
+
+    private class ScenarioStats {
+        val successes = LongAdder()
+        val failures = LongAdder()
+        val successLatency = LatencyHistogram()
+        val failureLatency = LatencyHistogram()
+    }
+}
@@ -0,0 +1,61 @@
+package com.cap.collector
+
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * Lock-free per-second counters of successful and failed attempts, relative to [startNanos].
+ *
+ * Seconds are grouped in lazily allocated segments so a long run does not need to preallocate all buckets.
+ * Attempts recorded after the last available second are added to the last bucket.
+ */
+class ThroughputTimeline(private val startNanos: Long) {
+    private val segments = AtomicReferenceArray<AtomicLongArray?>(MAX_SEGMENTS)
+
+    fun record(nowNanos: Long, successful: Boolean) {
+        val second = ((nowNanos - startNanos) / NANOS_PER_SECOND).coerceIn(0, MAX_SECONDS - 1)
+        val segment = segment((second / SECONDS_PER_SEGMENT).toInt())
+        val index = (second % SECONDS_PER_SEGMENT).toInt() * 2 + if (successful) 0 else 1
+        segment.incrementAndGet(index)
+    }
+
+    /**
+     * @return buckets from the first to the last second with any recorded attempt, seconds without attempts included
+     */
+    fun snapshot(): List<ThroughputBucket> {
+        val buckets = mutableListOf<ThroughputBucket>()
+        for (segmentIndex in 0 until MAX_SEGMENTS) {
+            val segment = segments.get(segmentIndex) ?: continue
+            for (offset in 0 until SECONDS_PER_SEGMENT) {
+                buckets += ThroughputBucket(
+                    second = segmentIndex.toLong() * SECONDS_PER_SEGMENT + offset,
+                    successful = segment.get(offset * 2),
+                    failed = segment.get(offset * 2 + 1),
+                )
+            }
+        }
+        val first = buckets.indexOfFirst { it.attempts() > 0 }
+        val last = buckets.indexOfLast { it.attempts() > 0 }
+        return if (first < 0) emptyList() else buckets.subList(first, last + 1).toList()
+    }
+
+    private fun segment(index: Int): AtomicLongArray {
+        segments.get(index)?.let { return it }
+        segments.compareAndSet(index, null, AtomicLongArray(SECONDS_PER_SEGMENT * 2))
+        return segments.get(index)!!
+    }
+
+    private companion object {
+        private const val NANOS_PER_SECOND = 1_000_000_000L
+        private const val SECONDS_PER_SEGMENT = 1024
+        private const val MAX_SEGMENTS = 1024
+        private const val MAX_SECONDS = SECONDS_PER_SEGMENT.toLong() * MAX_SEGMENTS
+    }
+}
+
+/**
+ * Attempts finished during one second of a run, [second] counted from the start of the run.
+ */
+data class ThroughputBucket(val second: Long, val successful: Long, val failed: Long) {
+    fun attempts() = successful + failed
+}
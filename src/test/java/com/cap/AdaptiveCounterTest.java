@@ -0,0 +1,105 @@
+package com.cap;
+
+import com.cap.counter.AdaptiveCounter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AdaptiveCounterTest {
+
+    @Test
+    public void shouldStayUnstripedWithoutContention() {
+        // given
+        var counter = new AdaptiveCounter();
+
+        // when
+        for (int i = 0; i < 1_000; i++) {
+            counter.increment();
+        }
+        counter.add(-250);
+
+        // then
+        assertThat(counter.stripes()).isZero();
+        assertThat(counter.sum()).isEqualTo(750);
+        assertThat(counter.exactSum()).isEqualTo(750);
+    }
+
+    @Test
+    public void shouldRejectDeltaWithoutNegation() {
+        // given
+        var counter = new AdaptiveCounter();
+        counter.add(Long.MAX_VALUE);
+        counter.add(-Long.MAX_VALUE);
+
+        // then
+        assertThatThrownBy(() -> counter.add(Long.MIN_VALUE)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(counter.sum()).isZero();
+        assertThat(counter.exactSum()).isZero();
+    }
+
+    @Test
+    public void shouldNotLoseConcurrentUpdates() throws InterruptedException {
+        // given
+        var counter = new AdaptiveCounter();
+        var threads = new ArrayList<Thread>();
+
+        // when
+        for (int t = 0; t < 8; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    counter.increment();
+                    if (i % 10 == 0) {
+                        counter.decrement();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // then
+        assertThat(counter.sum()).isEqualTo(8 * (100_000 - 10_000));
+        assertThat(counter.exactSum()).isEqualTo(counter.sum());
+    }
+
+    @Test
+    public void shouldReadExactSumThatExistedAtOneInstant() throws InterruptedException {
+        // given
+        var counter = new AdaptiveCounter();
+        var writers = 4;
+        var running = new AtomicBoolean(true);
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < writers; t++) {
+            // every writer keeps its contribution between 0 and 1
+            threads.add(Thread.ofPlatform().start(() -> {
+                while (running.get()) {
+                    counter.increment();
+                    counter.decrement();
+                }
+            }));
+        }
+
+        // when
+        var outOfRange = new AtomicLong();
+        for (int i = 0; i < 10_000; i++) {
+            var sum = counter.exactSum();
+            if (sum < 0 || sum > writers) {
+                outOfRange.incrementAndGet();
+            }
+        }
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // then
+        assertThat(outOfRange.get()).isZero();
+        assertThat(counter.exactSum()).isZero();
+    }
+}
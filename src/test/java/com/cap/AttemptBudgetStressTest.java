@@ -0,0 +1,94 @@
+package com.cap;
+
+import com.cap.collector.AttemptBudget;
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Expect;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.III_Result;
+import org.openjdk.jcstress.infra.results.IZ_Result;
+import org.openjdk.jcstress.infra.results.ZZZ_Result;
+
+/**
+ * jcstress tests of {@link AttemptBudget}, run with {@code mvn -Pjcstress verify -DskipTests}.
+ */
+public class AttemptBudgetStressTest {
+
+    @JCStressTest
+    @Outcome(id = {"true, true, false", "true, false, true", "false, true, true"}, expect = Expect.ACCEPTABLE, desc = "exactly maxAttempts reserved")
+    @Outcome(id = "true, true, true", expect = Expect.FORBIDDEN, desc = "maxAttempts overshot")
+    @Outcome(expect = Expect.FORBIDDEN, desc = "reservation lost although budget was left")
+    @State
+    public static class ReservationNeverOvershoots {
+        private final AttemptBudget budget = new AttemptBudget(10, 2);
+
+        @Actor
+        public void worker1(ZZZ_Result r) {
+            r.r1 = budget.tryReserveAttempt();
+        }
+
+        @Actor
+        public void worker2(ZZZ_Result r) {
+            r.r2 = budget.tryReserveAttempt();
+        }
+
+        @Actor
+        public void worker3(ZZZ_Result r) {
+            r.r3 = budget.tryReserveAttempt();
+        }
+    }
+
+    @JCStressTest
+    @Outcome(id = {"0, true", "0, false", "1, false"}, expect = Expect.ACCEPTABLE, desc = "reserved only before the target was observed")
+    @Outcome(id = "1, true", expect = Expect.FORBIDDEN, desc = "reserved an attempt after the target was observed as reached")
+    @State
+    public static class NoReservationAfterTargetReached {
+        private final AttemptBudget budget = new AttemptBudget(1, 10);
+
+        public NoReservationAfterTargetReached() {
+            budget.tryReserveAttempt();
+        }
+
+        @Actor
+        public void succeedingWorker() {
+            budget.recordSuccess();
+        }
+
+        @Actor
+        public void observingWorker(IZ_Result r) {
+            r.r1 = budget.successful();
+            r.r2 = budget.tryReserveAttempt();
+        }
+    }
+
+    @JCStressTest
+    @Outcome(id = "2, 1, 1", expect = Expect.ACCEPTABLE, desc = "all outcomes counted")
+    @Outcome(expect = Expect.FORBIDDEN, desc = "outcome lost")
+    @State
+    public static class OutcomesAreNotLost {
+        private final AttemptBudget budget = new AttemptBudget(10, 10);
+
+        @Actor
+        public void succeedingWorker() {
+            if (budget.tryReserveAttempt()) {
+                budget.recordSuccess();
+            }
+        }
+
+        @Actor
+        public void failingWorker() {
+            if (budget.tryReserveAttempt()) {
+                budget.recordFailure();
+            }
+        }
+
+        @Arbiter
+        public void arbiter(III_Result r) {
+            r.r1 = budget.attempts();
+            r.r2 = budget.successful();
+            r.r3 = budget.failed();
+        }
+    }
+}
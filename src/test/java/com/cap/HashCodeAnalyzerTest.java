@@ -0,0 +1,142 @@
+package com.cap;
+
+import com.cap.map.HashCodeAnalyzer;
+import com.cap.map.HashCodeReport.ContractViolation.Kind;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class HashCodeAnalyzerTest {
+
+    record Point(int x, int y) {
+    }
+
+    /**
+     * Legal hashCode, but points of a grid share few distinct values of {@code x + y}.
+     */
+    record SumHashedPoint(int x, int y) {
+        @Override
+        public int hashCode() {
+            return x + y;
+        }
+    }
+
+    static final class MutableKey {
+        private String name;
+
+        MutableKey(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof MutableKey that && name.equals(that.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+    }
+
+    static final class IdentityHashedKey {
+        private final String name;
+
+        IdentityHashedKey(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IdentityHashedKey that && name.equals(that.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    @Test
+    public void shouldReportWellDistributedHashAsHealthy() {
+        // given
+        var sample = grid().stream().map(it -> new Point(it[0], it[1])).toList();
+
+        // when
+        var report = new HashCodeAnalyzer.Builder<Point>().build().analyze(sample);
+
+        // then
+        assertThat(report.isHealthy()).isTrue();
+        assertThat(report.distinctKeys()).isEqualTo(10_000);
+        assertThat(report.tables()).singleElement()
+                .satisfies(it -> assertThat(it.tableSize()).isEqualTo(16_384));
+    }
+
+    @Test
+    public void shouldReportLongChainsAndSharedHashesOfPoorlyDistributedHash() {
+        // given
+        var sample = grid().stream().map(it -> new SumHashedPoint(it[0], it[1])).toList();
+
+        // when
+        var report = new HashCodeAnalyzer.Builder<SumHashedPoint>().withTableSizes(256, 16_384).build().analyze(sample);
+
+        // then
+        assertThat(report.isHealthy()).isFalse();
+        assertThat(report.distinctHashCodes()).isEqualTo(199);
+        var large = report.tables().get(1);
+        assertThat(large.isSlow()).isTrue();
+        assertThat(large.longestChain()).isEqualTo(100);
+        assertThat(large.occupiedBuckets()).isEqualTo(199);
+        assertThat(large.expectedProbes()).isGreaterThan(10 * large.uniformExpectedProbes());
+        assertThat(report.sharedHashes().get(0).hash()).isEqualTo(99);
+        assertThat(report.sharedHashes().get(0).keys()).isEqualTo(100);
+    }
+
+    @Test
+    public void shouldRejectTableSizesThatAreNotPowersOfTwo() {
+        // given
+        var builder = new HashCodeAnalyzer.Builder<Integer>();
+
+        // then
+        assertThatThrownBy(() -> builder.withTableSizes(16, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> builder.withTableSizes(24)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void shouldReportContractViolations() {
+        // given
+        var identityHashed = List.of(new IdentityHashedKey("a"), new IdentityHashedKey("a"), new IdentityHashedKey("b"));
+        var mutable = List.of(new MutableKey("a"), new MutableKey("b"));
+
+        // when
+        var identityReport = new HashCodeAnalyzer.Builder<IdentityHashedKey>().build().analyze(identityHashed);
+        var mutableReport = new HashCodeAnalyzer.Builder<MutableKey>()
+                .withMutation(it -> it.name = it.name + "-renamed")
+                .build()
+                .analyze(mutable);
+
+        // then
+        assertThat(identityReport.violations()).singleElement()
+                .satisfies(it -> assertThat(it.kind()).isEqualTo(Kind.EQUAL_KEYS_WITH_DIFFERENT_HASHES));
+        assertThat(identityReport.distinctKeys()).isEqualTo(2);
+        assertThat(mutableReport.violations()).hasSize(2)
+                .allMatch(it -> it.kind() == Kind.HASH_CHANGED_AFTER_MUTATION);
+        assertThat(mutableReport.isHealthy()).isFalse();
+    }
+
+    private static List<int[]> grid() {
+        return IntStream.range(0, 100)
+                .boxed()
+                .flatMap(x -> IntStream.range(0, 100).mapToObj(y -> new int[]{x, y}))
+                .toList();
+    }
+}
@@ -0,0 +1,117 @@
+package com.cap;
+
+import com.cap.load.LoadRunner;
+import com.cap.load.LoadRunnerOptions;
+import com.cap.load.RateLimiter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LoadRunnerTest {
+
+    @Test
+    public void shouldCollectTargetSuccessesFromStandIn() throws Exception {
+        // given
+        var options = LoadRunnerOptions.parse("--stand-in", "--stand-in-latency=5ms", "--stand-in-error-rate=0.2",
+                "--concurrency=4", "--target=50", "--attempts=1000");
+        var output = new ByteArrayOutputStream();
+
+        // when
+        var report = new LoadRunner(options, new PrintStream(output, true, StandardCharsets.UTF_8)).run();
+
+        // then
+        assertThat(report.getTasksCount().getSuccessful()).isBetween(50, 50 + 4);
+        assertThat(report.getTasksCount().getFailed()).isGreaterThan(0);
+        assertThat(report.getSuccessLatency().getP50()).isGreaterThanOrEqualTo(Duration.ofMillis(5));
+        assertThat(output.toString(StandardCharsets.UTF_8))
+                .contains("Throughput:")
+                .contains("Success latency:");
+    }
+
+    @Test
+    public void shouldLimitRequestRate() throws Exception {
+        // given
+        var options = LoadRunnerOptions.parse("--stand-in", "--stand-in-latency=0ms", "--concurrency=4", "--attempts=20", "--rate=100");
+        var startNanos = System.nanoTime();
+
+        // when
+        var report = new LoadRunner(options, new PrintStream(new ByteArrayOutputStream())).run();
+
+        // then
+        assertThat(report.getTasksCount().attempts()).isEqualTo(20);
+        assertThat(Duration.ofNanos(System.nanoTime() - startNanos)).isGreaterThanOrEqualTo(Duration.ofMillis(19 * 10));
+    }
+
+    @Test
+    public void shouldNotCountRateLimitInLatency() throws Exception {
+        // given 4 workers sharing 10 requests/s, a throttled request would wait 100-300ms for its permit
+        var options = LoadRunnerOptions.parse("--stand-in", "--stand-in-latency=10ms", "--concurrency=4", "--attempts=8", "--rate=10");
+
+        // when
+        var report = new LoadRunner(options, new PrintStream(new ByteArrayOutputStream())).run();
+
+        // then
+        assertThat(report.getTasksCount().attempts()).isEqualTo(8);
+        assertThat(report.getSuccessLatency().getP50()).isLessThan(Duration.ofMillis(100));
+    }
+
+    @Test
+    public void shouldKeepRateAfterIdlePeriod() throws InterruptedException {
+        // given 20 permits/s, idle long enough for several slots to pass
+        var rateLimiter = new RateLimiter(20);
+        Thread.sleep(200);
+        var threads = new ArrayList<Thread>();
+        var startNanos = System.nanoTime();
+
+        // when 4 threads take 2 permits each at once
+        for (int i = 0; i < 4; i++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                rateLimiter.acquire();
+                rateLimiter.acquire();
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // then
+        assertThat(Duration.ofNanos(System.nanoTime() - startNanos)).isGreaterThanOrEqualTo(Duration.ofMillis(7 * 50));
+        assertThatThrownBy(() -> new RateLimiter(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void shouldParseOptions() {
+        // when
+        var options = LoadRunnerOptions.parse("--url=http://localhost:8080/health", "--concurrency=32", "--duration=2m", "--rate=500");
+
+        // then
+        assertThat(options.url()).hasPort(8080);
+        assertThat(options.concurrency()).isEqualTo(32);
+        assertThat(options.duration()).isEqualTo(Duration.ofMinutes(2));
+        assertThat(options.rate()).isEqualTo(500);
+        assertThat(options.target()).isEqualTo(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void shouldRejectInvalidOptions() {
+        assertThatThrownBy(() -> LoadRunnerOptions.parse("--stand-in"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("--target");
+        assertThatThrownBy(() -> LoadRunnerOptions.parse("--stand-in", "--duration=10"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("--duration");
+        assertThatThrownBy(() -> LoadRunnerOptions.parse("--target=5", "--verbose"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("--verbose");
+        assertThatThrownBy(() -> LoadRunnerOptions.parse("--stand-in", "--target=10", "--attempts=5"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("--attempts");
+    }
+}
@@ -0,0 +1,105 @@
+package com.cap;
+
+import com.cap.measurement.Measurement;
+import com.cap.measurement.MeasurementResult;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+public class MeasurementTest {
+
+    @Test
+    public void shouldRunWarmupAndMeasuredIterationsOnEveryThread() {
+        // given
+        var executions = new AtomicInteger();
+        var measurement = new Measurement.Builder()
+                .withThreads(3)
+                .withWarmupIterations(2)
+                .withMeasuredIterations(4)
+                .build();
+
+        // when
+        var result = measurement.measure(executions::incrementAndGet);
+
+        // then
+        assertThat(executions.get()).isEqualTo(3 * (2 + 4));
+        assertThat(result.iterations()).hasSize(4);
+    }
+
+    @Test
+    public void shouldNotTimeThreadStartBecauseThreadsStartTogether() {
+        // given
+        var measurement = new Measurement.Builder()
+                .withThreads(4)
+                .withWarmupIterations(0)
+                .withMeasuredIterations(3)
+                .build();
+
+        // when
+        var result = measurement.measure(() -> sleep(Duration.ofMillis(50)));
+
+        // then
+        assertThat(result.min()).isGreaterThanOrEqualTo(Duration.ofMillis(50));
+        assertThat(result.max()).isLessThan(Duration.ofMillis(4 * 50));
+    }
+
+    @Test
+    public void shouldReportAllocatedBytesPerThread() {
+        // given
+        var measurement = new Measurement.Builder().withThreads(4).withMeasuredIterations(2).build();
+
+        // when
+        var result = measurement.measure(() -> {
+            for (int i = 0; i < 1_000; i++) {
+                blackhole = new byte[1_024];
+            }
+        });
+
+        // then
+        assertThat(result.allocatedBytesPerExecution()).isBetween(1_000L * 1_024, 2 * 1_000L * 1_024);
+    }
+
+    @Test
+    public void shouldComputeStatisticsOverIterations() {
+        // given
+        var result = new MeasurementResult(
+                List.of(Duration.ofMillis(40), Duration.ofMillis(10), Duration.ofMillis(30), Duration.ofMillis(20)),
+                1, 0, 0, Duration.ZERO
+        );
+
+        // then
+        assertThat(result.mean()).isEqualTo(Duration.ofMillis(25));
+        assertThat(result.standardDeviation().toNanos()).isCloseTo(12_909_944L, within(1L));
+        assertThat(result.percentile(50)).isEqualTo(Duration.ofMillis(20));
+        assertThat(result.percentile(75)).isEqualTo(Duration.ofMillis(30));
+        assertThat(result.min()).isEqualTo(Duration.ofMillis(10));
+        assertThat(result.max()).isEqualTo(Duration.ofMillis(40));
+    }
+
+    @Test
+    public void shouldFailWhenTaskFails() {
+        // given
+        var measurement = new Measurement.Builder().build();
+
+        // then
+        assertThatThrownBy(() -> measurement.measure(() -> {
+            throw new IllegalArgumentException("Failing on purpose");
+        })).isInstanceOf(IllegalStateException.class).hasRootCauseInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static volatile byte[] blackhole;
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
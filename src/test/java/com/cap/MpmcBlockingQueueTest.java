@@ -0,0 +1,200 @@
+package com.cap;
+
+import com.cap.queue.MpmcBlockingQueue;
+import com.cap.queue.MpmcRingBuffer;
+import com.cap.queue.WaitStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MpmcBlockingQueueTest {
+
+    @Test
+    public void shouldRoundCapacityUpAndRejectOffersWhenFull() {
+        // given
+        var queue = new MpmcRingBuffer<Integer>(3);
+
+        // when
+        var accepted = List.of(queue.offer(1), queue.offer(2), queue.offer(3), queue.offer(4), queue.offer(5));
+
+        // then
+        assertThat(queue.capacity()).isEqualTo(4);
+        assertThat(accepted).containsExactly(true, true, true, true, false);
+        assertThat(List.of(queue.poll(), queue.poll(), queue.poll(), queue.poll())).containsExactly(1, 2, 3, 4);
+        assertThat(queue.poll()).isNull();
+    }
+
+    @Test
+    public void shouldDeliverEveryElementExactlyOnceBetweenManyProducersAndConsumers() throws InterruptedException {
+        // given
+        var queue = new MpmcBlockingQueue<Integer>(16, WaitStrategy.parking(Duration.ofMillis(1)));
+        var perProducer = 10_000;
+        var received = ConcurrentHashMap.<Integer>newKeySet();
+        var threads = new ArrayList<Thread>();
+        for (int p = 0; p < 3; p++) {
+            var offset = p * perProducer;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    putUninterruptibly(queue, offset + i);
+                }
+            }));
+        }
+        for (int c = 0; c < 3; c++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    assertThat(received.add(takeUninterruptibly(queue))).isTrue();
+                }
+            }));
+        }
+
+        // when
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // then
+        assertThat(received).hasSize(3 * perProducer);
+        assertThat(queue).isEmpty();
+    }
+
+    @Test
+    public void shouldTimeOutAndRespondToInterruption() throws InterruptedException {
+        // given
+        var queue = new MpmcBlockingQueue<String>(2, WaitStrategy.yielding());
+        queue.put("first");
+        queue.put("second");
+
+        // then
+        assertThat(queue.offer("third", 10, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat(queue.remainingCapacity()).isZero();
+        assertThat(queue.iterator()).toIterable().containsExactly("first", "second");
+        assertThat(queue.take()).isEqualTo("first");
+        assertThat(queue.take()).isEqualTo("second");
+        assertThat(queue.poll(10, TimeUnit.MILLISECONDS)).isNull();
+        Thread.currentThread().interrupt();
+        assertThatThrownBy(queue::take).isInstanceOf(InterruptedException.class);
+    }
+
+    @Test
+    public void shouldRemoveArbitraryElements() throws InterruptedException {
+        // given
+        var queue = new MpmcBlockingQueue<Integer>(8, WaitStrategy.yielding());
+        for (int i = 1; i <= 6; i++) {
+            queue.put(i);
+        }
+
+        // when
+        var removed = queue.remove(3);
+        var removedMissing = queue.remove(42);
+        queue.removeAll(List.of(1, 5));
+        var iterator = queue.iterator();
+        iterator.next();
+        iterator.remove();
+
+        // then
+        assertThat(removed).isTrue();
+        assertThat(removedMissing).isFalse();
+        assertThat(queue).containsExactly(4, 6);
+        assertThat(queue.size()).isEqualTo(2);
+        assertThat(queue.peek()).isEqualTo(4);
+        assertThat(List.of(queue.take(), queue.take())).containsExactly(4, 6);
+        assertThat(queue.poll()).isNull();
+        assertThat(queue.remainingCapacity()).isEqualTo(8);
+    }
+
+    @Test
+    public void shouldSupportThreadPoolExecutorRemoval() throws InterruptedException {
+        // given a single busy worker and queued tasks
+        var queue = new MpmcBlockingQueue<Runnable>(8, WaitStrategy.parking(Duration.ofMillis(1)));
+        var executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queue);
+        var release = new CountDownLatch(1);
+        executor.execute(() -> awaitUninterruptibly(release));
+        var removedTask = (Runnable) () -> { };
+        executor.execute(removedTask);
+        var cancelled = executor.submit(() -> { });
+        executor.execute(() -> { });
+
+        // when
+        var removed = executor.remove(removedTask);
+        cancelled.cancel(false);
+        executor.purge();
+        var notRun = executor.shutdownNow();
+
+        // then
+        assertThat(removed).isTrue();
+        assertThat(notRun).hasSize(1);
+        assertThat(queue).isEmpty();
+        release.countDown();
+        assertThat(executor.awaitTermination(1, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void shouldNeverDeliverRemovedElements() throws InterruptedException {
+        // given
+        var queue = new MpmcBlockingQueue<Integer>(16, WaitStrategy.parking(Duration.ofMillis(1)));
+        var count = 20_000;
+        var polled = ConcurrentHashMap.<Integer>newKeySet();
+        var removed = ConcurrentHashMap.<Integer>newKeySet();
+        var producer = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < count; i++) {
+                putUninterruptibly(queue, i);
+            }
+            putUninterruptibly(queue, -1);
+        });
+        var remover = Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < count; i += 2) {
+                if (queue.remove(i)) {
+                    removed.add(i);
+                }
+            }
+        });
+        var consumer = Thread.ofPlatform().start(() -> {
+            int element;
+            while ((element = takeUninterruptibly(queue)) != -1) {
+                assertThat(polled.add(element)).isTrue();
+            }
+        });
+
+        // when
+        producer.join();
+        remover.join();
+        consumer.join();
+
+        // then every element was either polled or removed, never both
+        assertThat(polled).doesNotContainAnyElementsOf(removed);
+        assertThat(polled.size() + removed.size()).isEqualTo(count);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void putUninterruptibly(MpmcBlockingQueue<Integer> queue, int element) {
+        try {
+            queue.put(element);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int takeUninterruptibly(MpmcBlockingQueue<Integer> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
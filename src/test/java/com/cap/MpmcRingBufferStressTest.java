@@ -0,0 +1,176 @@
+package com.cap;
+
+import com.cap.queue.MpmcRingBuffer;
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Expect;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.III_Result;
+import org.openjdk.jcstress.infra.results.II_Result;
+import org.openjdk.jcstress.infra.results.I_Result;
+import org.openjdk.jcstress.infra.results.ZZZ_Result;
+
+/**
+ * jcstress tests of {@link MpmcRingBuffer}, run with {@code mvn -Pjcstress verify -DskipTests -Djcstress.options="-t MpmcRingBuffer"}.
+ */
+public class MpmcRingBufferStressTest {
+
+    @JCStressTest
+    @Outcome(id = "3, 2", expect = Expect.ACCEPTABLE, desc = "both elements received exactly once")
+    @Outcome(expect = Expect.FORBIDDEN, desc = "element lost or duplicated")
+    @State
+    public static class ElementsAreNotLostOrDuplicated {
+        private final MpmcRingBuffer<Integer> queue = new MpmcRingBuffer<>(2);
+        private Integer polled1;
+        private Integer polled2;
+
+        @Actor
+        public void producer1() {
+            queue.offer(1);
+        }
+
+        @Actor
+        public void producer2() {
+            queue.offer(2);
+        }
+
+        @Actor
+        public void consumer1() {
+            polled1 = queue.poll();
+        }
+
+        @Actor
+        public void consumer2() {
+            polled2 = queue.poll();
+        }
+
+        @Arbiter
+        public void arbiter(II_Result r) {
+            int sum = 0;
+            int count = 0;
+            for (Integer element : new Integer[]{polled1, polled2, queue.poll(), queue.poll(), queue.poll()}) {
+                if (element != null) {
+                    sum += element;
+                    count++;
+                }
+            }
+            r.r1 = sum;
+            r.r2 = count;
+        }
+    }
+
+    @JCStressTest
+    @Outcome(id = {"true, true, false", "true, false, true", "false, true, true"}, expect = Expect.ACCEPTABLE, desc = "exactly capacity offers accepted")
+    @Outcome(id = "true, true, true", expect = Expect.FORBIDDEN, desc = "capacity exceeded")
+    @Outcome(expect = Expect.FORBIDDEN, desc = "offer rejected although a slot was free")
+    @State
+    public static class CapacityIsNeverExceeded {
+        private final MpmcRingBuffer<Integer> queue = new MpmcRingBuffer<>(2);
+
+        @Actor
+        public void producer1(ZZZ_Result r) {
+            r.r1 = queue.offer(1);
+        }
+
+        @Actor
+        public void producer2(ZZZ_Result r) {
+            r.r2 = queue.offer(2);
+        }
+
+        @Actor
+        public void producer3(ZZZ_Result r) {
+            r.r3 = queue.offer(3);
+        }
+    }
+
+    @JCStressTest
+    @Outcome(id = {"0, 0", "0, 1", "1, 0", "1, 2"}, expect = Expect.ACCEPTABLE, desc = "elements received in order")
+    @Outcome(id = {"2, 0", "0, 2", "2, 1"}, expect = Expect.FORBIDDEN, desc = "second element received before the first one")
+    @Outcome(expect = Expect.FORBIDDEN, desc = "element duplicated or corrupted")
+    @State
+    public static class SingleProducerOrderIsKept {
+        private final MpmcRingBuffer<Integer> queue = new MpmcRingBuffer<>(4);
+
+        @Actor
+        public void producer() {
+            queue.offer(1);
+            queue.offer(2);
+        }
+
+        @Actor
+        public void consumer(II_Result r) {
+            r.r1 = valueOf(queue.poll());
+            r.r2 = valueOf(queue.poll());
+        }
+
+        private static int valueOf(Integer element) {
+            return element == null ? 0 : element;
+        }
+    }
+
+    @JCStressTest
+    @Outcome(id = {"1, 0, 0", "0, 1, 0"}, expect = Expect.ACCEPTABLE, desc = "element either removed or polled")
+    @Outcome(id = "1, 1, 0", expect = Expect.FORBIDDEN, desc = "element both removed and polled")
+    @Outcome(expect = Expect.FORBIDDEN, desc = "element lost or tombstone delivered")
+    @State
+    public static class ElementIsRemovedOrPolledOnce {
+        private final MpmcRingBuffer<Integer> queue = new MpmcRingBuffer<>(2);
+
+        public ElementIsRemovedOrPolledOnce() {
+            queue.offer(1);
+        }
+
+        @Actor
+        public void remover(III_Result r) {
+            r.r1 = queue.remove(1) ? 1 : 0;
+        }
+
+        @Actor
+        public void consumer(III_Result r) {
+            final var element = queue.poll();
+            r.r2 = element == null ? 0 : element;
+        }
+
+        @Arbiter
+        public void arbiter(III_Result r) {
+            r.r3 = queue.size() + (queue.poll() == null ? 0 : 10);
+        }
+    }
+
+    @JCStressTest
+    @Outcome(id = "42", expect = Expect.ACCEPTABLE, desc = "element received after wrapping around the ring")
+    @Outcome(id = "0", expect = Expect.ACCEPTABLE, desc = "element not published yet")
+    @Outcome(expect = Expect.FORBIDDEN, desc = "element of the previous lap or lost field values")
+    @State
+    public static class PublishedElementIsFullyVisible {
+        private final MpmcRingBuffer<Holder> queue = new MpmcRingBuffer<>(2);
+
+        public PublishedElementIsFullyVisible() {
+            for (int i = 0; i < 3; i++) {
+                queue.offer(new Holder(-1));
+                queue.poll();
+            }
+        }
+
+        @Actor
+        public void producer() {
+            queue.offer(new Holder(42));
+        }
+
+        @Actor
+        public void consumer(I_Result r) {
+            final var holder = queue.poll();
+            r.r1 = holder == null ? 0 : holder.value;
+        }
+
+        private static final class Holder {
+            private int value;
+
+            Holder(int value) {
+                this.value = value;
+            }
+        }
+    }
+}
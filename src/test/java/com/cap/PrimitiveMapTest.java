@@ -0,0 +1,90 @@
+package com.cap;
+
+import com.cap.map.ConcurrentLongLongMap;
+import com.cap.map.IntIntMap;
+import com.cap.map.LongLongMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PrimitiveMapTest {
+
+    @Test
+    public void shouldBehaveLikeHashMapUnderRandomOperations() {
+        // given
+        var random = new Random(42);
+        var tested = new IntIntMap();
+        var expected = new HashMap<Integer, Integer>();
+
+        // when
+        for (int i = 0; i < 200_000; i++) {
+            // small key range to exercise collisions, removal and key 0
+            var key = random.nextInt(2_000) - 1_000;
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    tested.put(key, i);
+                    expected.put(key, i);
+                }
+                case 1 -> assertThat(tested.addTo(key, 3)).isEqualTo(expected.merge(key, 3, Integer::sum));
+                case 2 -> assertThat(tested.remove(key)).isEqualTo(expected.remove(key) != null);
+                default -> assertThat(tested.getOrDefault(key, -1)).isEqualTo(expected.getOrDefault(key, -1));
+            }
+        }
+
+        // then
+        var actual = new HashMap<Integer, Integer>();
+        tested.forEach(actual::put);
+        assertThat(actual).isEqualTo(expected);
+        assertThat(tested.size()).isEqualTo(expected.size());
+    }
+
+    @Test
+    public void shouldFindKeysAfterRemovalsInTheMiddleOfProbeSequences() {
+        // given
+        var map = new LongLongMap(4);
+        for (long key = 1; key <= 1_000; key++) {
+            map.put(key << 32, key);
+        }
+
+        // when
+        for (long key = 1; key <= 1_000; key += 2) {
+            map.remove(key << 32);
+        }
+
+        // then
+        assertThat(map.size()).isEqualTo(500);
+        for (long key = 2; key <= 1_000; key += 2) {
+            assertThat(map.getOrDefault(key << 32, -1)).isEqualTo(key);
+        }
+        assertThat(map.containsKey(1L << 32)).isFalse();
+    }
+
+    @Test
+    public void shouldNotLoseConcurrentUpdates() throws InterruptedException {
+        // given
+        var map = new ConcurrentLongLongMap(1_024, 8);
+        var threads = new ArrayList<Thread>();
+
+        // when
+        for (int t = 0; t < 4; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    map.addTo(i % 1_000, 1);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // then
+        assertThat(map.size()).isEqualTo(1_000);
+        for (long key = 0; key < 1_000; key++) {
+            assertThat(map.getOrDefault(key, 0)).isEqualTo(4 * 100);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.cap;
+
+import com.cap.map.ReadMostlyMap;
+import org.junit.jupiter.api.Test;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ReadMostlyMapTest {
+
+    @Test
+    public void shouldKeepPublishedSnapshotUnchangedByLaterWrites() {
+        // given
+        var map = new ReadMostlyMap<String, Integer>(Map.of("a", 1));
+        var snapshot = map.snapshot();
+
+        // when
+        var previous = map.put("a", 2);
+        map.put("b", 3);
+        map.remove("b");
+
+        // then
+        assertThat(previous).isEqualTo(1);
+        assertThat(snapshot).containsExactly(Map.entry("a", 1));
+        assertThat(map).containsExactly(Map.entry("a", 2));
+        assertThat(map.version()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldPublishBatchAtOnceAndDiscardFailedBatch() {
+        // given
+        var map = new ReadMostlyMap<Integer, String>();
+        map.update(it -> {
+            for (int i = 0; i < 100; i++) {
+                it.put(i, "value-" + i);
+            }
+        });
+
+        // when
+        assertThatThrownBy(() -> map.update(it -> {
+            it.remove(1);
+            it.put(2, null);
+        })).isInstanceOf(NullPointerException.class);
+
+        // then
+        assertThat(map).hasSize(100).containsEntry(1, "value-1").containsEntry(2, "value-2");
+        // nothing to publish after the failed batch
+        assertThat(map.version()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldFindNoNullKeyBeforeAndAfterWrites() {
+        // given
+        var map = new ReadMostlyMap<String, Integer>();
+
+        // when
+        var beforeWrites = map.get(null);
+        map.put("a", 1);
+
+        // then
+        assertThat(beforeWrites).isNull();
+        assertThat(map.get(null)).isNull();
+        assertThat(map.containsKey(null)).isFalse();
+    }
+
+    @Test
+    public void shouldKeepConcurrentWritesWhenOtherWritesFail() throws InterruptedException {
+        // given
+        var map = new ReadMostlyMap<Integer, Integer>();
+        var perWriter = 1_000;
+        var failures = new AtomicInteger();
+        var changing = new AbstractMap<Integer, Integer>() {
+            @Override
+            public Set<Entry<Integer, Integer>> entrySet() {
+                throw new ConcurrentModificationException();
+            }
+        };
+        var threads = new ArrayList<Thread>();
+
+        // when failing batches and putAll calls are combined with successful puts
+        for (int w = 0; w < 2; w++) {
+            var offset = w * perWriter;
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    map.put(offset + i, i);
+                }
+            }));
+        }
+        threads.add(Thread.ofPlatform().start(() -> {
+            for (int i = 0; i < perWriter; i++) {
+                try {
+                    if (i % 2 == 0) {
+                        map.update(it -> {
+                            it.put(-1, -1);
+                            throw new IllegalStateException("failed batch");
+                        });
+                    } else {
+                        map.putAll(changing);
+                    }
+                } catch (IllegalStateException | ConcurrentModificationException e) {
+                    failures.incrementAndGet();
+                }
+            }
+        }));
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // then
+        assertThat(failures.get()).isEqualTo(perWriter);
+        assertThat(map).hasSize(2 * perWriter).doesNotContainKey(-1);
+    }
+
+    @Test
+    public void shouldApplyEveryConcurrentWrite() throws InterruptedException {
+        // given
+        var map = new ReadMostlyMap<Integer, Integer>();
+        var perWriter = 1_000;
+        var writers = new ArrayList<Thread>();
+
+        // when
+        for (int w = 0; w < 4; w++) {
+            var offset = w * perWriter;
+            writers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    map.put(offset + i, i);
+                }
+            }));
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        // then
+        assertThat(map).hasSize(4 * perWriter);
+        assertThat(map.version()).isLessThanOrEqualTo(4 * perWriter);
+    }
+}
@@ -1,15 +1,13 @@
 package com.cap;
 
+import com.cap.measurement.Measurement;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.stream.Collectors;
 
-import static com.cap.ExecutionDuration.measureExecutionDuration;
-import static java.util.stream.IntStream.range;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 
 public class SynchronizedVsLocksTests {
@@ -17,8 +15,15 @@ public class SynchronizedVsLocksTests {
 
     @Test
     public void shouldLockBeSlowerThanSynchronized() {
-        var iterationsCount = 5_000_000;
+        var iterationsCount = 1_000_000;
         var threadsCount = 2;
+        var warmupIterations = 2;
+        var measuredIterations = 10;
+        var measurement = new Measurement.Builder()
+                .withThreads(threadsCount)
+                .withWarmupIterations(warmupIterations)
+                .withMeasuredIterations(measuredIterations)
+                .build();
 
         AtomicInteger sumWithSynchronized = new AtomicInteger();
         Runnable increaseSumWithSynchronized = () -> {
@@ -28,9 +33,6 @@ public class SynchronizedVsLocksTests {
                 }
             }
         };
-        var threadsUsingSynchronized = range(0, threadsCount)
-                .mapToObj((i) -> new Thread(increaseSumWithSynchronized))
-                .collect(Collectors.toList());
 
         AtomicInteger sumWithLock = new AtomicInteger();
         var reentrantLock = new ReentrantLock();
@@ -41,20 +43,17 @@ public class SynchronizedVsLocksTests {
                 reentrantLock.unlock();
             }
         };
-        var threadsUsingLock = range(0, threadsCount)
-                .mapToObj((i) -> new Thread(increaseSumWithLock))
-                .collect(Collectors.toList());
 
+        var synchronizedResult = measurement.measure(increaseSumWithSynchronized);
+        var lockResult = measurement.measure(increaseSumWithLock);
 
-        var durationSynchronized = measureExecutionDuration(threadsUsingSynchronized);
-        var durationLock = measureExecutionDuration(threadsUsingLock);
+        logger.info("sumWithSynchronized={}, {}", sumWithSynchronized, synchronizedResult);
+        logger.info("sumWithLock={}, {}", sumWithLock, lockResult);
 
-        logger.info("sumWithSynchronized={}, took {} ms", sumWithSynchronized, durationSynchronized);
-        logger.info("sumWithLock={}, took {} ms", sumWithLock, durationLock);
-
-        assertThat(sumWithSynchronized.get()).isEqualTo(iterationsCount * threadsCount);
-        assertThat(sumWithLock.get()).isEqualTo(iterationsCount * threadsCount);
-        assertThat(durationLock).isGreaterThan(durationSynchronized);
+        var expectedSum = iterationsCount * threadsCount * (warmupIterations + measuredIterations);
+        assertThat(sumWithSynchronized.get()).isEqualTo(expectedSum);
+        assertThat(sumWithLock.get()).isEqualTo(expectedSum);
+        assertThat(lockResult.mean()).isGreaterThan(synchronizedResult.mean());
     }
 
 }
@@ -1,5 +1,6 @@
 package com.cap;
 
+import com.cap.measurement.Measurement;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
@@ -9,7 +10,6 @@ import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import static com.cap.ExecutionDuration.measureExecutionDuration;
 import static java.util.stream.IntStream.range;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -56,11 +56,11 @@ public class ThreadStartAndFinishTest {
         var sumWithoutThreads = new AtomicInteger(0);
         var numIterations = 1_000_000;
         Runnable increaseInteger = () -> range(0, numIterations).forEach((i) -> sumWithThreads.incrementAndGet());
-        var durationWith2Threads = measureExecutionDuration(new Thread(increaseInteger), new Thread(increaseInteger));
-        var durationWithoutThreads = ExecutionDuration.measureExecutionDuration(() -> range(0, numIterations).forEach((i) -> sumWithoutThreads.incrementAndGet()));
-        logger.info("millisWith2Threads={}", durationWith2Threads);
-        logger.info("millisWithoutThreads={}", durationWithoutThreads);
-        assertThat(durationWith2Threads).isGreaterThan(durationWithoutThreads);
+        var with2Threads = new Measurement.Builder().withThreads(2).build().measure(increaseInteger);
+        var withoutThreads = new Measurement.Builder().withThreads(1).build().measure(() -> range(0, numIterations).forEach((i) -> sumWithoutThreads.incrementAndGet()));
+        logger.info("with2Threads: {}", with2Threads);
+        logger.info("withoutThreads: {}", withoutThreads);
+        assertThat(with2Threads.mean()).isGreaterThan(withoutThreads.mean());
     }
 
     @Test
@@ -0,0 +1,48 @@
+package com.cap
+
+import com.cap.collector.CircuitBreaker
+import com.cap.collector.CircuitBreakerPolicy
+import org.assertj.core.api.Assertions.assertThat
+import org.junit.jupiter.api.Test
+import java.time.Duration
+
+class CircuitBreakerTest {
+
+    @Test
+    fun shouldIgnoreOutcomesOfAttemptsStartedBeforeLastTransition() {
+        // given a circuit opened by a single failure
+        val circuitBreaker = CircuitBreaker(
+            CircuitBreakerPolicy(failureRateThreshold = 1.0, window = 1, minimumAttempts = 1, openDuration = Duration.ofMillis(10))
+        )
+        val stale = circuitBreaker.awaitPermission { false }!!
+        circuitBreaker.record(successful = false, permit = circuitBreaker.awaitPermission { false }!!)
+
+        // when a probe closes the circuit before the stale attempt fails
+        val probe = circuitBreaker.awaitPermission { false }!!
+        circuitBreaker.record(successful = true, permit = probe)
+        circuitBreaker.record(successful = false, permit = stale)
+
+        // then
+        assertThat(stale.probe).isFalse()
+        assertThat(probe.probe).isTrue()
+        assertThat(circuitBreaker.openings()).isEqualTo(1)
+        assertThat(circuitBreaker.awaitPermission { false }!!.probe).isFalse()
+    }
+
+    @Test
+    fun shouldReopenWhenProbeFails() {
+        // given
+        val circuitBreaker = CircuitBreaker(
+            CircuitBreakerPolicy(failureRateThreshold = 1.0, window = 1, minimumAttempts = 1, openDuration = Duration.ofMillis(10))
+        )
+        circuitBreaker.record(successful = false, permit = circuitBreaker.awaitPermission { false }!!)
+
+        // when
+        circuitBreaker.record(successful = false, permit = circuitBreaker.awaitPermission { false }!!)
+
+        // then the next attempt is a probe again, after another open period
+        val start = System.nanoTime()
+        assertThat(circuitBreaker.awaitPermission { false }!!.probe).isTrue()
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(5))
+    }
+}
@@ -0,0 +1,106 @@
+package com.cap
+
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
+
+class ConcurrentPipelineTest {
+
+    @Test
+    fun shouldCountResultsPassingTheLastStage() {
+        // given
+        val sequence = AtomicInteger(0)
+        val persisted = ConcurrentHashMap.newKeySet<String>()
+        val pipeline = ConcurrentPipeline.source(maxConcurrency = 2) { sequence.incrementAndGet() }
+            .then("enrich", maxConcurrency = 4) { if (it % 10 == 0) null else "entity-$it" }
+            .then("persist", maxConcurrency = 2) { it.also { Thread.sleep(1) } }
+
+        // when
+        val report = pipeline.run(onSuccess = { persisted += it }, minNumberOfResults = 200)
+
+        // then
+        assertThat(report.tasksCount.successful).isBetween(200, 202)
+        assertThat(persisted).hasSize(report.tasksCount.successful)
+        assertThat(report.stages.map { it.name }).containsExactly("source", "enrich", "persist")
+        val enrich = report.stages[1].tasksCount
+        assertThat(enrich.failed).isEqualTo(report.tasksCount.failed).isGreaterThan(0)
+        assertThat(report.stages[2].throughputTimeline.sumOf { it.successful }).isEqualTo(report.tasksCount.successful.toLong())
+    }
+
+    @Test
+    fun shouldOverlapStagesAndBlockSourceWhenLastStageFallsBehind() {
+        // given
+        val created = AtomicInteger(0)
+        val lastCreated = AtomicLong(0)
+        val firstPersisted = AtomicLong(Long.MAX_VALUE)
+        val maxAhead = AtomicInteger(0)
+        val persistedCount = AtomicInteger(0)
+        val pipeline = ConcurrentPipeline.source(maxConcurrency = 2) {
+            maxAhead.accumulateAndGet(created.incrementAndGet() - persistedCount.get(), ::maxOf)
+            lastCreated.set(System.nanoTime())
+        }
+            .then("enrich", maxConcurrency = 2, queueCapacity = 5) { it }
+            .then("persist", maxConcurrency = 1, queueCapacity = 5) {
+                firstPersisted.compareAndSet(Long.MAX_VALUE, System.nanoTime())
+                Thread.sleep(2)
+                persistedCount.incrementAndGet()
+            }
+
+        // when
+        val report = pipeline.run(maxAttempts = 100)
+
+        // then
+        assertThat(report.tasksCount.successful).isEqualTo(100)
+        assertThat(firstPersisted.get()).isLessThan(lastCreated.get())
+        // both queues, workers of every stage and the reservation racing with them
+        assertThat(maxAhead.get()).isLessThanOrEqualTo(5 + 5 + 2 + 2 + 1 + 2)
+    }
+
+    @Test
+    fun shouldRejectTargetAboveMaxAttempts() {
+        // given
+        val pipeline = ConcurrentPipeline.source(maxConcurrency = 2) { 1 }
+
+        // then
+        assertThatThrownBy { pipeline.run(minNumberOfResults = 100, maxAttempts = 10) }
+            .isInstanceOf(IllegalArgumentException::class.java)
+    }
+
+    @Test
+    fun shouldStopWorkersWhenCallerIsInterrupted() {
+        // given a pipeline that never finishes on its own
+        val pipeline = ConcurrentPipeline.source(maxConcurrency = 2) { Thread.sleep(1); 1 }
+            .then("blocked", maxConcurrency = 1) { Thread.sleep(Long.MAX_VALUE) }
+        val failure = AtomicReference<Throwable>()
+        val caller = Thread.ofPlatform().start {
+            try {
+                pipeline.run(maxAttempts = 1_000)
+            } catch (e: Throwable) {
+                failure.set(e)
+            }
+        }
+        Thread.sleep(100)
+
+        // when
+        caller.interrupt()
+        caller.join(5_000)
+
+        // then
+        assertThat(caller.isAlive).isFalse()
+        assertThat(failure.get()).isInstanceOf(InterruptedException::class.java)
+        await { Thread.getAllStackTraces().keys.none { it.name.contains("-blocked-thread-") && it.isAlive } }
+    }
+
+    private fun await(condition: () -> Boolean) {
+        val deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos()
+        while (!condition()) {
+            check(System.nanoTime() < deadline) { "Condition not met within 5 seconds" }
+            Thread.sleep(1)
+        }
+    }
+}
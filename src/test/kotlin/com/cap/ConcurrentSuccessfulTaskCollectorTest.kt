@@ -1,8 +1,27 @@
 package com.cap
 
+import com.cap.collector.BatchDelivery
+import com.cap.collector.Checkpoint
+import com.cap.collector.CircuitBreakerPolicy
+import com.cap.collector.FailureBackoff
+import com.cap.collector.Scenario
 import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.assertj.core.api.Assertions.catchThrowable
 import org.junit.jupiter.api.RepeatedTest
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Files
+import java.nio.file.Path
 import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 
 class ConcurrentSuccessfulTaskCollectorTest {
 
@@ -119,4 +138,720 @@ class ConcurrentSuccessfulTaskCollectorTest {
         assertThat(results.failed).isEqualTo(19)
     }
 
-}
+    @RepeatedTest(20)
+    fun shouldNeverExceedMaxAttempts() {
+        // given
+        val concurrency = 16
+        val runner = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = concurrency)
+        val executedAttempts = AtomicInteger(0)
+
+        // when
+        val results = runner.countSuccessfulResults(
+            taskSupplier = {
+                executedAttempts.incrementAndGet()
+                null
+            },
+            minNumberOfResults = 1,
+            maxAttempts = 1_000,
+        )
+
+        // then
+        assertThat(executedAttempts.get()).isEqualTo(1_000)
+        assertThat(results.failed).isEqualTo(1_000)
+        assertThat(results.successful).isZero()
+    }
+
+    @RepeatedTest(5)
+    fun shouldReportLatencyAndThroughput() {
+        // given
+        val runner = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 4)
+        val iteration = AtomicInteger(0)
+        val taskSupplier = {
+            if (iteration.incrementAndGet() % 2 == 0) {
+                Thread.sleep(5)
+                1
+            } else {
+                null
+            }
+        }
+
+        // when
+        val report = runner.collectSuccessfulResults(
+            taskSupplier = taskSupplier,
+            minNumberOfResults = 20,
+            maxAttempts = 100,
+        )
+
+        // then
+        assertThat(report.successLatency.count).isEqualTo(report.tasksCount.successful.toLong())
+        assertThat(report.failureLatency.count).isEqualTo(report.tasksCount.failed.toLong())
+        assertThat(report.successLatency.p50).isGreaterThanOrEqualTo(Duration.ofMillis(5))
+        assertThat(report.failureLatency.p99).isLessThan(report.successLatency.p50)
+        assertThat(report.throughputTimeline.sumOf { it.successful }).isEqualTo(report.tasksCount.successful.toLong())
+        assertThat(report.throughputTimeline.sumOf { it.attempts() }).isEqualTo(report.tasksCount.attempts().toLong())
+    }
+
+    @RepeatedTest(5)
+    fun shouldDeliverSuccessfulResultsInBatches() {
+        // given
+        val runner = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 8)
+        val sequence = AtomicInteger(0)
+        val batches = CopyOnWriteArrayList<List<Int>>()
+        val consumerThreads = ConcurrentHashMap.newKeySet<String>()
+
+        // when
+        val results = runner.countSuccessfulResults(
+            taskSupplier = { sequence.incrementAndGet() },
+            minNumberOfResults = 1_000,
+            maxAttempts = 1_000,
+            batchDelivery = BatchDelivery(
+                onSuccessBatch = {
+                    consumerThreads += Thread.currentThread().name
+                    batches += it
+                },
+                batchSize = 64,
+            ),
+        )
+
+        // then
+        assertThat(results.successful).isEqualTo(1_000)
+        assertThat(batches).allSatisfy { assertThat(it).hasSizeBetween(1, 64) }
+        assertThat(batches.flatten()).containsExactlyInAnyOrderElementsOf(1..1_000)
+        assertThat(consumerThreads).hasSize(1)
+    }
+
+    @Test
+    fun shouldSlowDownWorkersWhenBatchDeliveryFallsBehind() {
+        // given
+        val runner = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 4)
+        val delivered = AtomicInteger(0)
+        val maxQueued = AtomicInteger(0)
+        val produced = AtomicInteger(0)
+
+        // when
+        val results = runner.countSuccessfulResults(
+            taskSupplier = {
+                maxQueued.accumulateAndGet(produced.incrementAndGet() - delivered.get(), ::maxOf)
+                1
+            },
+            minNumberOfResults = 200,
+            maxAttempts = 200,
+            batchDelivery = BatchDelivery(
+                onSuccessBatch = {
+                    Thread.sleep(5)
+                    delivered.addAndGet(it.size)
+                },
+                batchSize = 10,
+                queueCapacity = 20,
+            ),
+        )
+
+        // then
+        assertThat(results.successful).isEqualTo(200)
+        assertThat(delivered.get()).isEqualTo(200)
+        // queue capacity + batch being delivered + one result per blocked worker
+        assertThat(maxQueued.get()).isLessThanOrEqualTo(20 + 10 + 4)
+    }
+
+    @Test
+    fun shouldFailRunWhenBatchDeliveryStops() {
+        // given a sink whose consumer thread dies on the first batch
+        val runner = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 4)
+        val start = System.nanoTime()
+
+        // when
+        val failure = assertThatThrownBy {
+            runner.collectSuccessfulResults(
+                taskSupplier = { 1 },
+                minNumberOfResults = 10_000,
+                batchDelivery = BatchDelivery(
+                    onSuccessBatch = { throw AssertionError("sink broken") },
+                    batchSize = 10,
+                    queueCapacity = 10,
+                ),
+            )
+        }
+
+        // then workers blocked on the full queue and closing the sink do not wait for the dead consumer
+        failure.hasRootCauseMessage("sink broken")
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5))
+    }
+
+    @Test
+    fun shouldReuseWorkerThreadsBetweenRuns() {
+        // given
+        val workerThreads = List(3) { ConcurrentHashMap.newKeySet<Thread>() }
+
+        // when
+        ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 4, reuseWorkerPool = true).use { runner ->
+            workerThreads.forEach { threads ->
+                val results = runner.countSuccessfulResults(
+                    taskSupplier = {
+                        threads += Thread.currentThread()
+                        Thread.sleep(1)
+                        1
+                    },
+                    minNumberOfResults = 40,
+                    maxAttempts = 40,
+                )
+                assertThat(results).isEqualTo(ConcurrentSuccessfulTaskCollector.TasksCount(successful = 40, failed = 0))
+            }
+        }
+
+        // then
+        assertThat(workerThreads[0]).hasSize(4)
+        assertThat(workerThreads[1]).isEqualTo(workerThreads[0])
+        assertThat(workerThreads[2]).isEqualTo(workerThreads[0])
+        workerThreads[0].forEach { it.join(1_000) }
+        assertThat(workerThreads[0]).noneMatch { it.isAlive }
+    }
+
+    @Test
+    fun shouldNotRunAfterClose() {
+        // given
+        val runner = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 2, reuseWorkerPool = true)
+        runner.close()
+
+        // then
+        assertThatThrownBy {
+            runner.countSuccessfulResults(taskSupplier = { 1 }, minNumberOfResults = 1, maxAttempts = 1)
+        }.isInstanceOf(IllegalStateException::class.java)
+    }
+
+    @Test
+    fun shouldExposeProgressOfRunningCollection() {
+        // given
+        val runner = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 4)
+        val release = CountDownLatch(1)
+        val firstResults = AtomicInteger(0)
+
+        // when
+        val run = runner.startCollecting(
+            taskSupplier = {
+                if (firstResults.incrementAndGet() > 8) {
+                    release.await()
+                }
+                1
+            },
+            minNumberOfResults = 20,
+            maxAttempts = 20,
+        )
+        await { run.snapshot().inFlight == 4 }
+        val snapshot = run.snapshot()
+        release.countDown()
+
+        // then
+        assertThat(snapshot.successful).isEqualTo(8)
+        assertThat(snapshot.failed).isZero()
+        assertThat(snapshot.attemptsPerSecond).isPositive()
+        assertThat(snapshot.estimatedTimeToTarget).isNotNull()
+        assertThat(run.await()).isEqualTo(ConcurrentSuccessfulTaskCollector.TasksCount(successful = 20, failed = 0))
+        assertThat(run.isDone()).isTrue()
+        assertThat(run.snapshot().estimatedTimeToTarget).isEqualTo(Duration.ZERO)
+    }
+
+    @Test
+    fun shouldCountAttemptsInFlightOfBatchRun() {
+        // given
+        val runner = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 4)
+        val release = CountDownLatch(1)
+        val calls = AtomicInteger(0)
+
+        // when two batches of 10 results are collected and 4 more calls wait
+        val run = runner.startCollectingInBatches(
+            batchSupplier = {
+                if (calls.incrementAndGet() > 2) {
+                    release.await()
+                }
+                List(10) { 1 }
+            },
+            minNumberOfResults = 100,
+        )
+        await { calls.get() == 6 }
+        val snapshot = run.snapshot()
+        release.countDown()
+
+        // then
+        assertThat(snapshot.successful).isEqualTo(20)
+        assertThat(snapshot.inFlight).isEqualTo(4)
+        assertThat(run.await().successful).isEqualTo(100)
+        assertThat(run.snapshot().inFlight).isZero()
+    }
+
+    @Test
+    fun shouldStopStartingAttemptsWhenCancelled() {
+        // given
+        val runner = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 4)
+        val run = runner.startCollecting(
+            taskSupplier = {
+                Thread.sleep(1)
+                null
+            },
+            minNumberOfResults = 1,
+            maxAttempts = Int.MAX_VALUE,
+        )
+        await { run.snapshot().failed > 10 }
+
+        // when
+        run.cancel()
+
+        // then
+        val results = run.await()
+        assertThat(results.successful).isZero()
+        assertThat(results.failed).isGreaterThan(10).isLessThan(Int.MAX_VALUE)
+    }
+
+    @Test
+    fun shouldStopAfterDuration() {
+        // given
+        val runner = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 4)
+
+        // when
+        val millisBefore = System.currentTimeMillis()
+        val results = runner.countSuccessfulResults(
+            taskSupplier = {
+                Thread.sleep(5)
+                1
+            },
+            duration = Duration.ofMillis(200),
+        )
+        val durationMillis = System.currentTimeMillis() - millisBefore
+
+        // then
+        assertThat(durationMillis).isBetween(200, 1_000)
+        assertThat(results.successful).isBetween(20, 4 * 200 / 5 + 4)
+    }
+
+    @Test
+    fun shouldStopAtDeadline() {
+        // given
+        val runner = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 2)
+        val deadline = Instant.now().plusMillis(100)
+
+        // when
+        val results = runner.countSuccessfulResults(
+            taskSupplier = {
+                Thread.sleep(5)
+                null
+            },
+            maxAttempts = 1_000_000,
+            deadline = deadline,
+        )
+
+        // then
+        assertThat(Instant.now()).isAfterOrEqualTo(deadline)
+        assertThat(results.failed).isBetween(1, 2 * 100 / 5 + 2)
+    }
+
+    @Test
+    fun shouldNotCountWarmupAttempts() {
+        // given
+        val runner = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 2)
+        val delivered = AtomicInteger(0)
+
+        // when
+        val report = runner.collectSuccessfulResults(
+            taskSupplier = {
+                Thread.sleep(2)
+                1
+            },
+            onSuccess = { delivered.incrementAndGet() },
+            minNumberOfResults = 10,
+            maxAttempts = 10,
+            warmup = Duration.ofMillis(100),
+        )
+
+        // then
+        assertThat(report.tasksCount).isEqualTo(ConcurrentSuccessfulTaskCollector.TasksCount(successful = 10, failed = 0))
+        assertThat(report.successLatency.count).isEqualTo(10)
+        assertThat(report.warmup.successful).isGreaterThan(10)
+        assertThat(report.warmup.failed).isZero()
+        assertThat(delivered.get()).isEqualTo(10)
+    }
+
+    @Test
+    fun shouldShareBudgetThroughFile(@TempDir directory: Path) {
+        // given
+        val budgetFile = directory.resolve("budget")
+        val collectors = List(2) { ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 4) }
+
+        // when
+        val runs = collectors.map {
+            it.startCollecting(
+                taskSupplier = {
+                    Thread.sleep(1)
+                    1
+                },
+                minNumberOfResults = 200,
+                maxAttempts = 200,
+                sharedBudgetFile = budgetFile,
+            )
+        }
+        val results = runs.map { it.await() }
+
+        // then
+        assertThat(results.sumOf { it.successful }).isEqualTo(200)
+        assertThat(results).allSatisfy { assertThat(it.successful).isPositive() }
+    }
+
+    @Test
+    fun shouldKeepReusedPoolUsableWhenBudgetFileIsRejected(@TempDir directory: Path) {
+        // given
+        val foreignFile = Files.write(directory.resolve("foreign"), ByteArray(64) { 7 })
+        val runner = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 2, reuseWorkerPool = true)
+
+        // when
+        val rejected = catchThrowable {
+            runner.countSuccessfulResults(taskSupplier = { 1 }, maxAttempts = 10, sharedBudgetFile = foreignFile)
+        }
+        val next = runner.countSuccessfulResults(taskSupplier = { 1 }, maxAttempts = 10)
+        runner.close()
+
+        // then
+        assertThat(rejected).isInstanceOf(IllegalArgumentException::class.java)
+        assertThat(next.successful).isEqualTo(10)
+    }
+
+    @Test
+    fun shouldResumeFromCheckpoint(@TempDir directory: Path) {
+        // given
+        val sequence = AtomicInteger(0)
+        val release = CountDownLatch(1)
+        val checkpoint = Checkpoint<Int>(
+            file = directory.resolve("checkpoint"),
+            interval = Duration.ofMillis(20),
+            resultKey = { "entity-$it" },
+        )
+        val interruptedRun = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 2).startCollecting(
+            taskSupplier = {
+                val value = sequence.incrementAndGet()
+                if (value > 30) {
+                    release.await()
+                }
+                value
+            },
+            minNumberOfResults = 100,
+            maxAttempts = 100,
+            checkpoint = checkpoint,
+        )
+        await { checkpoint.recordedKeys().size >= 30 }
+        interruptedRun.cancel()
+        release.countDown()
+        val interrupted = interruptedRun.await()
+
+        // when
+        val executedAfterResume = AtomicInteger(0)
+        val resumed = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 2).countSuccessfulResults(
+            taskSupplier = {
+                executedAfterResume.incrementAndGet()
+                sequence.incrementAndGet()
+            },
+            minNumberOfResults = 100,
+            maxAttempts = 100,
+            checkpoint = checkpoint,
+        )
+
+        // then
+        assertThat(resumed.successful).isEqualTo(100)
+        assertThat(executedAfterResume.get()).isEqualTo(100 - interrupted.successful)
+        assertThat(checkpoint.recordedKeys()).hasSize(100).doesNotHaveDuplicates()
+    }
+
+    @Test
+    fun shouldComputeRatesOfResumedRunFromItsOwnAttempts(@TempDir directory: Path) {
+        // given a checkpoint of 50 successful results
+        val checkpoint = Checkpoint<Int>(file = directory.resolve("checkpoint"), interval = Duration.ofSeconds(10))
+        ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 2).countSuccessfulResults(
+            taskSupplier = { 1 },
+            minNumberOfResults = 50,
+            maxAttempts = 50,
+            checkpoint = checkpoint,
+        )
+        val executions = AtomicInteger(0)
+        val release = CountDownLatch(1)
+
+        // when the resumed run makes 2 attempts and then waits
+        val run = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 1).startCollecting(
+            taskSupplier = {
+                if (executions.incrementAndGet() > 2) {
+                    release.await()
+                }
+                1
+            },
+            minNumberOfResults = 100,
+            maxAttempts = 100,
+            checkpoint = checkpoint,
+        )
+        await { executions.get() == 3 }
+        Thread.sleep(200)
+        val snapshot = run.snapshot()
+        release.countDown()
+        run.await()
+
+        // then 3 attempts in over 200ms, not 53
+        assertThat(snapshot.successful).isEqualTo(52)
+        assertThat(snapshot.attemptsPerSecond).isLessThan(3 / 0.2)
+        assertThat(snapshot.estimatedTimeToTarget).isGreaterThan(Duration.ofSeconds(1))
+    }
+
+    @Test
+    fun shouldKeepReusedPoolUsableWhenCheckpointIsRejected(@TempDir directory: Path) {
+        // given
+        val foreignFile = Files.write(directory.resolve("foreign"), ByteArray(64) { 7 })
+        val runner = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 2, reuseWorkerPool = true)
+
+        // when
+        val rejected = catchThrowable {
+            runner.countSuccessfulResults(taskSupplier = { 1 }, maxAttempts = 10, checkpoint = Checkpoint(foreignFile))
+        }
+        val next = runner.countSuccessfulResults(taskSupplier = { 1 }, maxAttempts = 10)
+        runner.close()
+
+        // then
+        assertThat(rejected).isInstanceOf(IllegalArgumentException::class.java)
+        assertThat(next.successful).isEqualTo(10)
+    }
+
+    @Test
+    fun shouldBackOffAfterConsecutiveFailures() {
+        // given
+        val collector = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 1)
+        val backoff = FailureBackoff(initialDelay = Duration.ofMillis(20), maxDelay = Duration.ofMillis(40), jitter = 0.0)
+
+        // when
+        val start = System.nanoTime()
+        val result = collector.countSuccessfulResults(
+            taskSupplier = { null },
+            maxAttempts = 4,
+            failureBackoff = backoff,
+        )
+        val elapsed = Duration.ofNanos(System.nanoTime() - start)
+
+        // then
+        assertThat(result.failed).isEqualTo(4)
+        // no backoff after the last attempt, the budget is exhausted by then
+        assertThat(elapsed).isGreaterThanOrEqualTo(Duration.ofMillis(20 + 40 + 40))
+    }
+
+    @Test
+    fun shouldStopBackingOffWhenRunIsOver() {
+        // given workers backing off for a minute after their first failure
+        val collector = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 4)
+        val backoff = FailureBackoff(initialDelay = Duration.ofMinutes(1), maxDelay = Duration.ofMinutes(1), jitter = 0.0)
+
+        // when
+        val start = System.nanoTime()
+        val exhausted = collector.countSuccessfulResults(
+            taskSupplier = { null },
+            maxAttempts = 4,
+            failureBackoff = backoff,
+        )
+        val exhaustedElapsed = Duration.ofNanos(System.nanoTime() - start)
+        val run = collector.startCollecting(
+            taskSupplier = { null },
+            maxAttempts = 1_000,
+            failureBackoff = backoff,
+        )
+        Thread.sleep(100)
+        val cancelStart = System.nanoTime()
+        run.cancel()
+        val cancelled = run.await()
+        val cancelledElapsed = Duration.ofNanos(System.nanoTime() - cancelStart)
+
+        // then
+        assertThat(exhausted.failed).isEqualTo(4)
+        assertThat(exhaustedElapsed).isLessThan(Duration.ofSeconds(5))
+        assertThat(cancelled.failed).isBetween(1, 4)
+        assertThat(cancelledElapsed).isLessThan(Duration.ofSeconds(5))
+    }
+
+    @Test
+    fun shouldPauseAttemptsWhileCircuitIsOpen() {
+        // given
+        val collector = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 4)
+        val outageEnd = System.nanoTime() + Duration.ofMillis(300).toNanos()
+        val attempts = AtomicInteger(0)
+        val policy = CircuitBreakerPolicy(
+            failureRateThreshold = 0.5,
+            window = 10,
+            minimumAttempts = 10,
+            openDuration = Duration.ofMillis(50),
+        )
+
+        // when
+        val report = collector.collectSuccessfulResults(
+            taskSupplier = {
+                attempts.incrementAndGet()
+                if (System.nanoTime() - outageEnd < 0) null else 1
+            },
+            minNumberOfResults = 100,
+            circuitBreaker = policy,
+        )
+
+        // then
+        assertThat(report.tasksCount.successful).isGreaterThanOrEqualTo(100)
+        assertThat(report.circuitOpenings).isGreaterThanOrEqualTo(1)
+        // without the breaker 4 busy workers would fail millions of times during the outage
+        assertThat(report.tasksCount.failed).isLessThan(100)
+    }
+
+    @Test
+    fun shouldCountResultsOfBatchesAndTrimLastBatch() {
+        // given
+        val collector = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 4)
+        val sequence = AtomicInteger(0)
+        val calls = AtomicInteger(0)
+        val collected = ConcurrentHashMap.newKeySet<Int>()
+
+        // when
+        val report = collector.collectSuccessfulResultsInBatches(
+            batchSupplier = {
+                calls.incrementAndGet()
+                List(30) { sequence.incrementAndGet() }
+            },
+            onSuccess = { collected += it },
+            minNumberOfResults = 1_000,
+            maxAttempts = 100,
+        )
+
+        // then
+        assertThat(report.tasksCount.successful).isEqualTo(1_000)
+        assertThat(collected).hasSize(1_000)
+        assertThat(calls.get()).isBetween(34, 34 + 3)
+    }
+
+    @Test
+    fun shouldCountEmptyBatchAsFailedAttempt() {
+        // given
+        val collector = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 2)
+        val calls = AtomicInteger(0)
+
+        // when
+        val result = collector.collectSuccessfulResultsInBatches(
+            batchSupplier = { if (calls.incrementAndGet() % 2 == 0) emptyList() else listOf(1, 2) },
+            maxAttempts = 10,
+        )
+
+        // then
+        assertThat(result.tasksCount).isEqualTo(ConcurrentSuccessfulTaskCollector.TasksCount(successful = 10, failed = 5))
+    }
+
+    @Test
+    fun shouldExecuteScenariosInProportionToWeights() {
+        // given
+        val collector = ConcurrentSuccessfulTaskCollector<String>(maxConcurrency = 4)
+        val scenarios = listOf(
+            Scenario("read", weight = 70.0) { "read" },
+            Scenario("write", weight = 25.0) { "write" },
+            Scenario<String>("search", weight = 5.0) { null },
+        )
+
+        // when
+        val report = collector.collectScenarioMix(scenarios = scenarios, maxAttempts = 10_000)
+
+        // then
+        val read = report.scenarios.getValue("read").tasksCount
+        val write = report.scenarios.getValue("write").tasksCount
+        val search = report.scenarios.getValue("search").tasksCount
+        assertThat(read.failed + write.failed + search.successful).isZero()
+        assertThat(read.successful + write.successful).isEqualTo(report.tasksCount.successful)
+        assertThat(search.failed).isEqualTo(report.tasksCount.failed)
+        assertThat(report.tasksCount.attempts()).isEqualTo(10_000)
+        assertThat(read.successful).isBetween(6_500, 7_500)
+        assertThat(write.successful).isBetween(2_000, 3_000)
+        assertThat(search.failed).isBetween(250, 750)
+        assertThat(report.scenarios.getValue("search").failureLatency.count).isEqualTo(search.failed.toLong())
+    }
+
+    @Test
+    fun shouldTimeOutHungAttemptsAndReplaceTheirWorkers() {
+        // given
+        val collector = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 2)
+        val calls = AtomicInteger(0)
+
+        // when
+        val start = System.nanoTime()
+        val result = collector.countSuccessfulResults(
+            taskSupplier = {
+                val call = calls.incrementAndGet()
+                if (call % 5 == 0) {
+                    Thread.sleep(10_000)
+                }
+                call
+            },
+            maxAttempts = 50,
+            attemptTimeout = Duration.ofMillis(50),
+        )
+        val elapsed = Duration.ofNanos(System.nanoTime() - start)
+
+        // then
+        assertThat(result).isEqualTo(ConcurrentSuccessfulTaskCollector.TasksCount(successful = 40, failed = 10, timedOut = 10))
+        assertThat(elapsed).isLessThan(Duration.ofSeconds(5))
+    }
+
+    @Test
+    fun shouldKeepManyFuturesInFlightWithFewThreads() {
+        // given
+        val collector = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 50)
+        val scheduler = Executors.newSingleThreadScheduledExecutor()
+        val calls = AtomicInteger(0)
+        val inFlight = AtomicInteger(0)
+        val maxInFlight = AtomicInteger(0)
+        val callingThreads = ConcurrentHashMap.newKeySet<String>()
+
+        // when
+        val result = scheduler.use {
+            collector.collectSuccessfulResultsAsync(
+                asyncTaskSupplier = {
+                    callingThreads += Thread.currentThread().name
+                    val call = calls.incrementAndGet()
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), ::maxOf)
+                    val future = CompletableFuture<Int?>()
+                    scheduler.schedule({
+                        inFlight.decrementAndGet()
+                        future.complete(if (call % 4 == 0) null else call)
+                    }, 10, TimeUnit.MILLISECONDS)
+                    future
+                },
+                minNumberOfResults = 300,
+                maxAttempts = 1_000,
+                threads = 2,
+            ).tasksCount
+        }
+
+        // then
+        assertThat(result.successful).isBetween(300, 350)
+        assertThat(result.attempts()).isEqualTo(calls.get())
+        assertThat(callingThreads).hasSizeLessThanOrEqualTo(2)
+        assertThat(maxInFlight.get()).isGreaterThan(2).isLessThanOrEqualTo(50)
+    }
+
+    @Test
+    fun shouldTimeOutFuturesThatNeverComplete() {
+        // given
+        val collector = ConcurrentSuccessfulTaskCollector<Int>(maxConcurrency = 5)
+        val calls = AtomicInteger(0)
+
+        // when
+        val result = collector.collectSuccessfulResultsAsync(
+            asyncTaskSupplier = {
+                if (calls.incrementAndGet() % 2 == 0) CompletableFuture() else CompletableFuture.completedFuture(1)
+            },
+            maxAttempts = 20,
+            attemptTimeout = Duration.ofMillis(20),
+            threads = 1,
+        ).tasksCount
+
+        // then
+        assertThat(result).isEqualTo(ConcurrentSuccessfulTaskCollector.TasksCount(successful = 10, failed = 10, timedOut = 10))
+    }
+
+    private fun await(condition: () -> Boolean) {
+        val deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos()
+        while (!condition()) {
+            check(System.nanoTime() < deadline) { "Condition not met within 5 seconds" }
+            Thread.sleep(1)
+        }
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.cap
+
+import com.cap.collector.LatencyHistogram
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.data.Percentage
+import org.junit.jupiter.api.Test
+import java.time.Duration
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class LatencyHistogramTest {
+
+    @Test
+    fun shouldReportPercentilesWithinBucketPrecision() {
+        // given
+        val histogram = LatencyHistogram()
+
+        // when
+        (1L..10_000L).forEach { histogram.record(it * 1_000) }
+
+        // then
+        val snapshot = histogram.snapshot()
+        assertThat(snapshot.count).isEqualTo(10_000)
+        assertThat(snapshot.p50.toNanos()).isCloseTo(Duration.ofMillis(5).toNanos(), Percentage.withPercentage(3.5))
+        assertThat(snapshot.p99.toNanos()).isCloseTo(9_900_000L, Percentage.withPercentage(3.5))
+        assertThat(snapshot.max.toNanos()).isCloseTo(Duration.ofMillis(10).toNanos(), Percentage.withPercentage(3.5))
+        assertThat(snapshot.mean.toNanos()).isEqualTo(5_000_500)
+    }
+
+    @Test
+    fun shouldReportZeroWhenNothingRecorded() {
+        val snapshot = LatencyHistogram().snapshot()
+
+        assertThat(snapshot.count).isZero()
+        assertThat(snapshot.p99).isEqualTo(Duration.ZERO)
+        assertThat(snapshot.mean).isEqualTo(Duration.ZERO)
+    }
+
+    @Test
+    fun shouldNotLoseConcurrentRecordings() {
+        // given
+        val histogram = LatencyHistogram()
+        val executor = Executors.newFixedThreadPool(4)
+
+        // when
+        repeat(4) {
+            executor.submit { repeat(100_000) { histogram.record(it.toLong()) } }
+        }
+        executor.shutdown()
+        executor.awaitTermination(10, TimeUnit.SECONDS)
+
+        // then
+        assertThat(histogram.snapshot().count).isEqualTo(400_000)
+    }
+
+    @Test
+    fun shouldCoverWholeRangeOfValues() {
+        val histogram = LatencyHistogram()
+
+        histogram.record(Long.MAX_VALUE)
+        histogram.record(0)
+
+        assertThat(histogram.snapshot().max.toNanos()).isEqualTo(Long.MAX_VALUE)
+        assertThat(histogram.snapshot().percentile(0.0)).isEqualTo(Duration.ZERO)
+    }
+}
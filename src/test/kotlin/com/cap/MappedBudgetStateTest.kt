@@ -0,0 +1,69 @@
+package com.cap
+
+import com.cap.collector.AttemptBudget
+import com.cap.collector.MappedBudgetState
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.util.concurrent.TimeUnit
+
+class MappedBudgetStateTest {
+
+    @Test
+    fun shouldNotOvershootMaxAttemptsReservedFromTwoProcesses(@TempDir directory: Path) {
+        // given
+        val budgetFile = directory.resolve("budget")
+        val maxAttempts = 200_000
+        val childProcess = ProcessBuilder(
+            Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+            "-cp", System.getProperty("java.class.path"),
+            ReservingProcess::class.java.name,
+            budgetFile.toString(),
+            maxAttempts.toString(),
+        ).redirectErrorStream(true).start()
+
+        // when
+        val reservedHere = reserveAll(budgetFile, maxAttempts)
+        assertThat(childProcess.waitFor(30, TimeUnit.SECONDS)).isTrue()
+        val reservedByChild = childProcess.inputStream.bufferedReader().readText().trim().toInt()
+
+        // then
+        assertThat(reservedHere + reservedByChild).isEqualTo(maxAttempts)
+        MappedBudgetState(budgetFile).use {
+            assertThat(AttemptBudget(1, maxAttempts, null, it).tryReserveAttempt()).isFalse()
+        }
+    }
+
+    @Test
+    fun shouldRejectFileWrittenByOthers(@TempDir directory: Path) {
+        // given
+        val file = directory.resolve("not-a-budget")
+        Files.write(file, ByteArray(128) { 1 })
+
+        // then
+        assertThatThrownBy { MappedBudgetState(file) }.isInstanceOf(IllegalArgumentException::class.java)
+    }
+
+    object ReservingProcess {
+        @JvmStatic
+        fun main(args: Array<String>) {
+            println(reserveAll(Paths.get(args[0]), args[1].toInt()))
+        }
+    }
+
+    private companion object {
+        fun reserveAll(budgetFile: Path, maxAttempts: Int): Int =
+            MappedBudgetState(budgetFile).use { state ->
+                val budget = AttemptBudget(Int.MAX_VALUE, maxAttempts, null, state)
+                var reserved = 0
+                while (budget.tryReserveAttempt()) {
+                    reserved++
+                }
+                reserved
+            }
+    }
+}
@@ -0,0 +1,81 @@
+package com.cap
+
+import com.cap.collector.ResultSpillFile
+import org.assertj.core.api.Assertions.assertThat
+import org.assertj.core.api.Assertions.assertThatThrownBy
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.FileAlreadyExistsException
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.atomic.AtomicInteger
+
+class ResultSpillFileTest {
+
+    @Test
+    fun shouldReadBackEveryResultSpilledByConcurrentWorkers(@TempDir directory: Path) {
+        // given
+        val spillDirectory = directory.resolve("spill")
+        val sequence = AtomicInteger(0)
+        val spill = ResultSpillFile<String>(spillDirectory, { it.toByteArray() }, segmentSize = 4096)
+
+        // when
+        spill.use {
+            ConcurrentSuccessfulTaskCollector<String>(maxConcurrency = 8).countSuccessfulResults(
+                taskSupplier = {
+                    val value = sequence.incrementAndGet()
+                    "result-$value".repeat(value % 5)
+                },
+                onSuccess = spill::append,
+                maxAttempts = 20_000,
+            )
+        }
+
+        // then
+        val read = ResultSpillFile.read(spillDirectory) { String(it) }.toList()
+        val expected = (1..20_000).map { "result-$it".repeat(it % 5) }
+        assertThat(read).containsExactlyInAnyOrderElementsOf(expected)
+        assertThat(Files.list(spillDirectory).count()).isGreaterThan(1)
+        assertThat(spill.mappedSegments()).isEqualTo(1)
+    }
+
+    @Test
+    fun shouldFailWaitingWritersWhenNextSegmentCannotBeMapped(@TempDir directory: Path) {
+        // given the file of the second segment is in the way
+        val spill = ResultSpillFile<String>(directory, { it.toByteArray() }, segmentSize = 64)
+        Files.createFile(directory.resolve("results-000001.spill"))
+
+        // when
+        val result = ConcurrentSuccessfulTaskCollector<String>(maxConcurrency = 4).countSuccessfulResults(
+            taskSupplier = { "result" },
+            onSuccess = spill::append,
+            maxAttempts = 1_000,
+        )
+
+        // then every writer gives up instead of waiting for the segment forever
+        assertThat(result.successful).isLessThanOrEqualTo(64 / 12)
+        assertThat(result.failed).isGreaterThan(0)
+        assertThatThrownBy { spill.append("late") }
+            .isInstanceOf(IllegalStateException::class.java)
+            .hasCauseInstanceOf(FileAlreadyExistsException::class.java)
+    }
+
+    @Test
+    fun shouldStopReadingSegmentAtUncommittedRecord(@TempDir directory: Path) {
+        // given
+        ResultSpillFile<String>(directory, { it.toByteArray() }, segmentSize = 64).use {
+            it.append("first")
+        }
+        val segment = directory.resolve("results-000000.spill")
+        val bytes = Files.readAllBytes(segment)
+        // a record reserved after "first" whose header was never written by a crashed writer
+        "lost".toByteArray().copyInto(bytes, destinationOffset = 16)
+        Files.write(segment, bytes)
+
+        // when
+        val read = ResultSpillFile.read(directory) { String(it) }.toList()
+
+        // then
+        assertThat(read).containsExactly("first")
+    }
+}